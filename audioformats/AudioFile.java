@@ -39,6 +39,7 @@ public class AudioFile extends File {
 	
 	private EncodingInfo info;
 	private Tag tag;
+	private boolean tagRead = true;
 	
 	/**
 	 *	<p>These constructors are used by the different readers, users should not use them, but use the <code>AudioFileIO.read(File)</code> method instead !.</p>
@@ -67,6 +68,20 @@ public class AudioFile extends File {
 		this.tag = tag;
 	}
 	
+	/**
+	 *	<p>These constructors are used by the different readers, users should not use them, but use the <code>AudioFileIO.read(File)</code> method instead !.</p>
+	 *	<p>Create the AudioFile representing file f, the encodinginfos and containing the tag, which may have been skipped by the reader</p>
+	 *
+	 *@param	f	The file of the audiofile
+	 *@param	info	the encoding infos over this file
+	 *@param	tag	the tag contained in this file
+	 *@param	tagRead	<code>false</code> if the tag of the file was not read, and <code>tag</code> is an empty placeholder
+	 */
+	public AudioFile(File f, EncodingInfo info, Tag tag, boolean tagRead) {
+		this(f, info, tag);
+		this.tagRead = tagRead;
+	}
+	
 	/**
 	 *	<p>These constructors are used by the different readers, users should not use them, but use the <code>AudioFileIO.read(File)</code> method instead !.</p>
 	 *	<p>Create the AudioFile representing file denoted by pathname s, the encodinginfos and containing an empty tag</p>
@@ -122,6 +137,16 @@ public class AudioFile extends File {
 		return info.getChannelNumber();
 	}
 
+	/**
+	 *	<p>Returns the encoding infos of this AudioFile, including the fields which have
+	 *	no dedicated method here, like the gapless playback and ReplayGain values.</p>
+	 *
+	 *@return	Returns the encoding infos of this AudioFile
+	 */
+	public EncodingInfo getEncodingInfo() {
+		return info;
+	}
+
 	/**
 	 *	<p>Returns the encoding type of this AudioFile, this needs to be precisely specified in the future</p>
 	 *
@@ -189,6 +214,16 @@ public class AudioFile extends File {
 	    return info.isVbr();
 	}
 	
+	/**
+	 *	<p>Returns <code>false</code> if this AudioFile was read without its tag (see <code>AudioFileIO.readInfoOnly(File)</code>).</p>
+	 *	<p>Such a file contains an empty tag, which must not be written back, since that would erase the tag of the file on the disk.</p>
+	 *
+	 *@return	<code>true</code> if the tag of the file has been read.
+	 */
+	public boolean isTagRead() {
+	    return tagRead;
+	}
+	
 	/**
 	 *	<p>Returns a multi-line string with the file path, the encoding informations, and the tag contents.</p>
 	 *
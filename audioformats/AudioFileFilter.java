@@ -53,7 +53,9 @@ public class AudioFileFilter implements FileFilter {
 			ext.equals("mp+") ||
 			ext.equals("ape") ||
 			ext.equals("wav") || 
-			ext.equals("wma") )
+			ext.equals("wma") ||
+			ext.equals("m4a") ||
+			ext.equals("mp4") )
 			return true;
 		
 
@@ -31,8 +31,20 @@ import entagged.audioformats.wav.WavFileReader;
 import entagged.audioformats.wav.WavFileWriter;
 
 import java.io.File;
-import java.util.Hashtable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * <p>
@@ -40,8 +52,10 @@ import java.util.Iterator;
  * select the appropriate reader/writer for the given file.
  * </p>
  * <p>
- * It selects the appropriate reader/writer based on the file extension (case
- * ignored).
+ * It selects the appropriate reader/writer based on the first bytes of the
+ * file (see {@link AudioFormatDetector}), so files with a wrong or without
+ * extension are handled too. When the content is not recognized, the file
+ * extension (case ignored) is used.
  * </p>
  * <p>
  * Here is an simple example of use:
@@ -79,9 +93,12 @@ public class AudioFileIO {
 	// !!
 
 	/**
-	 * This field contains the default instance for static use.
+	 * This class holds the default instance for static use, it is initialized
+	 * by the class loader the first time it is needed.
 	 */
-	private static AudioFileIO defaultInstance;
+	private static class DefaultInstanceHolder {
+		private static final AudioFileIO INSTANCE = new AudioFileIO();
+	}
 
 	/**
 	 * <p>
@@ -104,10 +121,7 @@ public class AudioFileIO {
 	 * @return The default instance.
 	 */
 	public static AudioFileIO getDefaultAudioFileIO() {
-		if (defaultInstance == null) {
-			defaultInstance = new AudioFileIO();
-		}
-		return defaultInstance;
+		return DefaultInstanceHolder.INSTANCE;
 	}
 
 	/**
@@ -126,6 +140,63 @@ public class AudioFileIO {
 		return getDefaultAudioFileIO().readFile(f);
 	}
 
+	/**
+	 * <p>
+	 * Read the parts of the given file requested by the options.
+	 * </p>
+	 * 
+	 * @param f
+	 *            The file to read.
+	 * @param options
+	 *            {@link AudioFileReader#READ_INFO} and/or
+	 *            {@link AudioFileReader#READ_TAG}.
+	 * @return The AudioFile with the requested parts, the others are empty.
+	 * @exception CannotReadException
+	 *                If the file could not be read, the extension wasn't
+	 *                recognized, or an IO error occured during the read.
+	 * @see #readFile(File, int)
+	 */
+	public static AudioFile read(File f, int options)
+			throws CannotReadException {
+		return getDefaultAudioFileIO().readFile(f, options);
+	}
+
+	/**
+	 * <p>
+	 * Read only the encoding infos of the given file, like the length and
+	 * the bitrate. The tag is not read, and the returned AudioFile cannot be
+	 * written.
+	 * </p>
+	 * 
+	 * @param f
+	 *            The file to read.
+	 * @return The AudioFile with the file encoding infos and an empty tag.
+	 * @exception CannotReadException
+	 *                If the file could not be read, the extension wasn't
+	 *                recognized, or an IO error occured during the read.
+	 */
+	public static AudioFile readInfoOnly(File f) throws CannotReadException {
+		return read(f, AudioFileReader.READ_INFO);
+	}
+
+	/**
+	 * <p>
+	 * Read only the tag of the given file. This skips the costly parts of the
+	 * encoding infos, like the search of the first MP3 frame or of the last
+	 * Ogg page.
+	 * </p>
+	 * 
+	 * @param f
+	 *            The file to read.
+	 * @return The AudioFile with the file tag and empty encoding infos.
+	 * @exception CannotReadException
+	 *                If the file could not be read, the extension wasn't
+	 *                recognized, or an IO error occured during the read.
+	 */
+	public static AudioFile readTagOnly(File f) throws CannotReadException {
+		return read(f, AudioFileReader.READ_TAG);
+	}
+
 	/**
 	 * <p>
 	 * Write the tag contained in the audiofile in the actual file on the disk.
@@ -141,17 +212,44 @@ public class AudioFileIO {
 		getDefaultAudioFileIO().writeFile(f);
 	}
 
+	/**
+	 * <p>
+	 * Write the tags contained in the given audiofiles in the files on the
+	 * disk, several files being written at the same time.
+	 * </p>
+	 * 
+	 * @param files
+	 *            The AudioFiles to be written
+	 * @return The files which could not be written, mapped to the
+	 *         CannotWriteException explaining why. Empty if all were written.
+	 * @see #writeFiles(Collection, int)
+	 */
+	public static Map writeAll(Collection files) {
+		return getDefaultAudioFileIO().writeFiles(files);
+	}
+
 	/**
 	 * This member is used to broadcast modification events to registered
 	 * {@link entagged.audioformats.generic.AudioFileModificationListener}
 	 */
 	private final ModificationHandler modificationHandler;
 
+	/**
+	 * The number of chunks of files given to each thread by writeFiles.
+	 */
+	private final static int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 * The counters shared by all the writers.
+	 */
+	private final WriteMetrics writeMetrics = new WriteMetrics();
+
 	// These tables contains all the readers/writers associated with extension
-	// as a key
-	private Hashtable readers = new Hashtable();
+	// as a key. The readers and writers hold no per-file state, so one
+	// instance of each serves all threads and lookups need no locking.
+	private final Map readers = new ConcurrentHashMap();
 
-	private Hashtable writers = new Hashtable();
+	private final Map writers = new ConcurrentHashMap();
 
 	/**
 	 * Creates an instance.
@@ -185,7 +283,7 @@ public class AudioFileIO {
 	 *                wasn't recognized, or other IO error occured.
 	 */
 	public void deleteTag(AudioFile f) throws CannotWriteException {
-		String ext = Utils.getExtension(f);
+		String ext = getFormat(f);
 
 		Object afw = writers.get(ext);
 		if (afw == null)
@@ -195,6 +293,52 @@ public class AudioFileIO {
 		((AudioFileWriter) afw).delete(f);
 	}
 
+	/**
+	 * Returns the counters of the writes done by this instance, telling how
+	 * many of them had to copy the whole file because the new tag did not fit
+	 * in the old one.
+	 */
+	public WriteMetrics getWriteMetrics() {
+		return this.writeMetrics;
+	}
+
+	/**
+	 * Returns the format of the given file, as detected from its content by
+	 * {@link AudioFormatDetector}, or its extension if the content could not
+	 * be recognized.
+	 * 
+	 * @param f
+	 *            The file to examine.
+	 * @return The key of the reader/writer to use.
+	 */
+	private String getFormat(File f) {
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(f, "r");
+			return getFormat(f, new FileReadWindow(f, raf,
+					AudioFormatDetector.HEADER_SIZE));
+		} catch (IOException e) {
+			return Utils.getExtension(f);
+		} finally {
+			try {
+				if (raf != null)
+					raf.close();
+			} catch (IOException ex) {
+				System.err.println("\"" + f + "\" :" + ex);
+			}
+		}
+	}
+
+	/**
+	 * Same as above, but works on an already opened file.
+	 */
+	private String getFormat(File f, FileReadWindow raf) throws IOException {
+		String format = AudioFormatDetector.detect(raf);
+		if (format == null)
+			format = Utils.getExtension(f);
+		return format;
+	}
+
 	/**
 	 * Creates the readers and writers.
 	 */
@@ -218,6 +362,7 @@ public class AudioFileIO {
 		while (it.hasNext()) {
 			AudioFileWriter curr = (AudioFileWriter) it.next();
 			curr.setAudioFileModificationListener(this.modificationHandler);
+			curr.setWriteMetrics(this.writeMetrics);
 		}
 	}
 
@@ -234,14 +379,59 @@ public class AudioFileIO {
 	 *                recognized, or an IO error occured during the read.
 	 */
 	public AudioFile readFile(File f) throws CannotReadException {
-		String ext = Utils.getExtension(f);
+		return readFile(f, AudioFileReader.READ_ALL);
+	}
 
-		Object afr = readers.get(ext);
-		if (afr == null)
-			throw new CannotReadException(
-					"No Reader associated to this extension: " + ext);
+	/**
+	 * <p>
+	 * Read the parts of the given file requested by the options. The parts
+	 * not requested are replaced by empty ones. An AudioFile read without
+	 * {@link AudioFileReader#READ_TAG} cannot be written.
+	 * </p>
+	 * 
+	 * @param f
+	 *            The file to read.
+	 * @param options
+	 *            {@link AudioFileReader#READ_INFO} and/or
+	 *            {@link AudioFileReader#READ_TAG}.
+	 * @return The AudioFile with the requested parts.
+	 * @exception CannotReadException
+	 *                If the file could not be read, the extension wasn't
+	 *                recognized, or an IO error occured during the read.
+	 */
+	public AudioFile readFile(File f, int options) throws CannotReadException {
+		if (!f.canRead())
+			throw new CannotReadException("Can't read file \""
+					+ f.getAbsolutePath() + "\"");
+
+		// The file is opened and its header read once, for both the detection
+		// and the reading
+		RandomAccessFile raf = null;
+		try {
+			String ext;
+			FileReadWindow window;
+			try {
+				raf = new RandomAccessFile(f, "r");
+				window = new FileReadWindow(f, raf);
+				ext = getFormat(f, window);
+			} catch (IOException e) {
+				throw new CannotReadException("\"" + f + "\" :" + e, e);
+			}
 
-		return ((AudioFileReader) afr).read(f);
+			Object afr = readers.get(ext);
+			if (afr == null)
+				throw new CannotReadException(
+						"No Reader associated to this extension: " + ext);
+
+			return ((AudioFileReader) afr).read(f, window, options);
+		} finally {
+			try {
+				if (raf != null)
+					raf.close();
+			} catch (IOException ex) {
+				System.err.println("\"" + f + "\" :" + ex);
+			}
+		}
 	}
 
 	/**
@@ -255,6 +445,19 @@ public class AudioFileIO {
 		this.modificationHandler.removeAudioFileModificationListener(listener);
 	}
 
+	/**
+	 * Sets the policy choosing the padding left after the tags created by all
+	 * the writers. The formats without padding ignore it.
+	 * 
+	 * @param policy
+	 *            The policy, {@link PaddingPolicy#DEFAULT} by default.
+	 */
+	public void setPaddingPolicy(PaddingPolicy policy) {
+		Iterator it = writers.values().iterator();
+		while (it.hasNext())
+			((AudioFileWriter) it.next()).setPaddingPolicy(policy);
+	}
+
 	/**
 	 * <p>
 	 * Write the tag contained in the audiofile in the actual file on the disk.
@@ -267,7 +470,7 @@ public class AudioFileIO {
 	 *                wasn't recognized, or other IO error occured.
 	 */
 	public void writeFile(AudioFile f) throws CannotWriteException {
-		String ext = Utils.getExtension(f);
+		String ext = getFormat(f);
 
 		Object afw = writers.get(ext);
 		if (afw == null)
@@ -276,4 +479,144 @@ public class AudioFileIO {
 
 		((AudioFileWriter) afw).write(f);
 	}
+
+	/**
+	 * Same as {@link #writeFiles(Collection, int)}, with one thread per
+	 * available processor.
+	 */
+	public Map writeFiles(Collection files) {
+		return writeFiles(files, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * <p>
+	 * Write the tags contained in the given audiofiles in the files on the
+	 * disk.
+	 * </p>
+	 * The files are grouped by directory, and each group is split in chunks
+	 * of consecutive files so that a large directory is shared by all the
+	 * threads. The files of a chunk are written one after the other, while
+	 * the chunks are processed in parallel by up to the given number of
+	 * threads. Each file is written as by
+	 * {@link #writeFile(AudioFile)}, in place when its tag fits, and a failure
+	 * does not stop the others.<br>
+	 * The listeners receive fileWillBeModified and fileModified from the
+	 * writing threads, so they must be thread safe. The fileOperationFinished
+	 * events are sent from the calling thread when all the files are written,
+	 * in a single call to the {@link BatchModificationListener}s.<br>
+	 * If the calling thread is interrupted, the files not yet started are
+	 * reported as failures, and the method returns once the files being
+	 * written are finished, with the interrupted status set.
+	 * 
+	 * @param files
+	 *            The AudioFiles to be written
+	 * @param threads
+	 *            The maximum number of files written at the same time
+	 * @return The files which could not be written, mapped to the
+	 *         CannotWriteException explaining why. Empty if all were written.
+	 */
+	public Map writeFiles(Collection files, int threads) {
+		Map groups = new LinkedHashMap();
+		Iterator it = files.iterator();
+		while (it.hasNext()) {
+			AudioFile f = (AudioFile) it.next();
+			File dir = f.getAbsoluteFile().getParentFile();
+			List group = (List) groups.get(dir);
+			if (group == null) {
+				group = new ArrayList();
+				groups.put(dir, group);
+			}
+			group.add(f);
+		}
+
+		Map failures = new ConcurrentHashMap();
+		AtomicBoolean cancelled = new AtomicBoolean();
+		List results = Collections.synchronizedList(new ArrayList());
+		if (groups.isEmpty())
+			return failures;
+
+		// Several chunks per thread, so the threads finishing first take
+		// over the remaining ones
+		threads = Math.max(1, threads);
+		int chunkSize = Math.max(1, (files.size() + threads
+				* CHUNKS_PER_THREAD - 1)
+				/ (threads * CHUNKS_PER_THREAD));
+		List chunks = new ArrayList();
+		it = groups.values().iterator();
+		while (it.hasNext()) {
+			List group = (List) it.next();
+			for (int i = 0; i < group.size(); i += chunkSize)
+				chunks.add(group.subList(i, Math.min(group.size(), i
+						+ chunkSize)));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+				threads, chunks.size()));
+		for (int i = 0; i < chunks.size(); i++)
+			executor.execute(new GroupWriter((List) chunks.get(i), failures,
+					results, cancelled));
+		executor.shutdown();
+
+		boolean interrupted = false;
+		while (!executor.isTerminated()) {
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				// The files being written are not interrupted, as the
+				// channels would be closed, but no other is started
+				cancelled.set(true);
+				interrupted = true;
+			}
+		}
+		this.modificationHandler.filesOperationFinished(results);
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return failures;
+	}
+
+	/**
+	 * Writes a chunk of the files of one directory, for writeFiles.
+	 */
+	private class GroupWriter implements Runnable {
+		private final List files;
+
+		private final Map failures;
+
+		private final List results;
+
+		private final AtomicBoolean cancelled;
+
+		GroupWriter(List files, Map failures, List results,
+				AtomicBoolean cancelled) {
+			this.files = files;
+			this.failures = failures;
+			this.results = results;
+			this.cancelled = cancelled;
+		}
+
+		public void run() {
+			modificationHandler.startCollecting();
+			try {
+				for (int i = 0; i < files.size(); i++) {
+					AudioFile f = (AudioFile) files.get(i);
+					if (cancelled.get()) {
+						failures.put(f, new CannotWriteException("\""
+								+ f.getAbsolutePath()
+								+ "\" : interrupted before being written"));
+						continue;
+					}
+					try {
+						writeFile(f);
+					} catch (CannotWriteException e) {
+						failures.put(f, e);
+					} catch (RuntimeException e) {
+						failures.put(f, new CannotWriteException("\""
+								+ f.getAbsolutePath() + "\" :" + e, e));
+					}
+				}
+			} finally {
+				results.addAll(modificationHandler.stopCollecting());
+			}
+		}
+	}
 }
@@ -0,0 +1,304 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import entagged.audioformats.exceptions.CannotReadException;
+import entagged.audioformats.generic.AudioFileReader;
+import entagged.audioformats.generic.AudioFileScanListener;
+
+/**
+ * <p>
+ * Reads all the audio files found below a directory root in parallel.
+ * </p>
+ * <p>
+ * The directory tree is walked on the calling thread using an
+ * {@link AudioFileFilter} (or any other {@link FileFilter}), and every file
+ * found is parsed by {@link AudioFileIO#readFile(File, int)} on the worker threads
+ * of an {@link ExecutorService}. Each result is handed to an
+ * {@link AudioFileScanListener} as soon as it is available. The number of
+ * files submitted but not yet reported is bounded, the walk blocks when that
+ * bound is reached, so the memory used stays the same whatever the size of
+ * the library.
+ * </p>
+ * <p>
+ * Any executor can be used, a <code>ForkJoinPool</code> or a virtual thread
+ * executor for example. When none is given, a fixed pool with one thread per
+ * available processor is created and released by {@link #shutdown()}.
+ * </p>
+ * <p>
+ * <code>
+ *		AudioFileScanner scanner = new AudioFileScanner();<br/>
+ *		scanner.scan(new File("/music"), listener); //Blocks until every file has been reported.<br/>
+ *		scanner.shutdown();
+ *	</code>
+ * </p>
+ * 
+ * @see AudioFileIO
+ * @see AudioFileScanListener
+ */
+public class AudioFileScanner {
+
+	/**
+	 * The instance used to read the files.
+	 */
+	private final AudioFileIO audioFileIO;
+
+	/**
+	 * Executes the read operations.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Filter used while walking the directories.
+	 */
+	private FileFilter fileFilter = new AudioFileFilter();
+
+	/**
+	 * The parts of the files to read.
+	 */
+	private int readOptions = AudioFileReader.READ_ALL;
+
+	/**
+	 * The maximum number of files submitted and not yet reported.
+	 */
+	private final int maxPending;
+
+	/**
+	 * <code>true</code> if {@link #executor} was created by this instance.
+	 */
+	private final boolean ownExecutor;
+
+	/**
+	 * Creates an instance using the default {@link AudioFileIO} and one thread
+	 * per available processor.
+	 */
+	public AudioFileScanner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates an instance using the default {@link AudioFileIO} and the given
+	 * number of threads.
+	 * 
+	 * @param threads
+	 *            The number of worker threads.
+	 */
+	public AudioFileScanner(int threads) {
+		this(AudioFileIO.getDefaultAudioFileIO(), Executors
+				.newFixedThreadPool(threads), threads * 4, true);
+	}
+
+	/**
+	 * Creates an instance working on the given executor.<br>
+	 * The executor is not shut down by this instance.
+	 * 
+	 * @param audioFileIO
+	 *            The instance used to read the files.
+	 * @param executor
+	 *            The executor running the read operations.
+	 * @param maxPending
+	 *            The maximum number of files submitted to the executor and
+	 *            not yet reported to the listener.
+	 */
+	public AudioFileScanner(AudioFileIO audioFileIO, ExecutorService executor,
+			int maxPending) {
+		this(audioFileIO, executor, maxPending, false);
+	}
+
+	private AudioFileScanner(AudioFileIO audioFileIO,
+			ExecutorService executor, int maxPending, boolean ownExecutor) {
+		if (maxPending < 1)
+			throw new IllegalArgumentException("maxPending must be positive: "
+					+ maxPending);
+		this.audioFileIO = audioFileIO;
+		this.executor = executor;
+		this.maxPending = maxPending;
+		this.ownExecutor = ownExecutor;
+	}
+
+	/**
+	 * Returns the filter used while walking the directories.
+	 * 
+	 * @return The filter.
+	 */
+	public FileFilter getFileFilter() {
+		return fileFilter;
+	}
+
+	/**
+	 * Returns the parts of the files which are read.
+	 * 
+	 * @return The read options.
+	 */
+	public int getReadOptions() {
+		return readOptions;
+	}
+
+	/**
+	 * <p>
+	 * Reads every file accepted by the filter below <code>root</code>.
+	 * </p>
+	 * <p>
+	 * This method returns when all the files have been reported to the
+	 * listener. The listener is called from the worker threads.
+	 * </p>
+	 * 
+	 * @param root
+	 *            The directory to scan, or a single file.
+	 * @param listener
+	 *            The listener receiving the results.
+	 * @return The number of files read or failed.
+	 * @exception InterruptedException
+	 *                If the calling thread has been interrupted, the files
+	 *                already submitted are still reported before.
+	 */
+	public int scan(File root, final AudioFileScanListener listener)
+			throws InterruptedException {
+		final Semaphore pending = new Semaphore(maxPending);
+		int count = 0;
+		try {
+			LinkedList dirs = new LinkedList();
+			Set visited = new HashSet();
+			if (root.isDirectory())
+				dirs.add(root);
+			else if (fileFilter.accept(root)) {
+				submit(root, listener, pending);
+				count++;
+			}
+
+			while (!dirs.isEmpty()) {
+				File dir = (File) dirs.removeFirst();
+				// Avoid loops introduced by symbolic links
+				if (!visited.add(canonical(dir)))
+					continue;
+
+				File[] files = dir.listFiles(fileFilter);
+				if (files == null)
+					continue;
+
+				for (int i = 0; i < files.length; i++) {
+					if (Thread.interrupted())
+						throw new InterruptedException();
+
+					if (files[i].isDirectory()) {
+						dirs.add(files[i]);
+					} else {
+						submit(files[i], listener, pending);
+						count++;
+					}
+				}
+			}
+		} finally {
+			// Wait for the files still being read
+			pending.acquireUninterruptibly(maxPending);
+			pending.release(maxPending);
+		}
+		return count;
+	}
+
+	/**
+	 * Sets the filter used while walking the directories, directories must
+	 * be accepted to be walked.<br>
+	 * Default is {@link AudioFileFilter}.
+	 * 
+	 * @param filter
+	 *            The filter.
+	 */
+	public void setFileFilter(FileFilter filter) {
+		this.fileFilter = filter;
+	}
+
+	/**
+	 * Sets the parts of the files to read, for example only the tags when
+	 * indexing a library.<br>
+	 * Default is {@link AudioFileReader#READ_ALL}.
+	 * 
+	 * @param options
+	 *            {@link AudioFileReader#READ_INFO} and/or
+	 *            {@link AudioFileReader#READ_TAG}.
+	 * @see AudioFileIO#readFile(File, int)
+	 */
+	public void setReadOptions(int options) {
+		this.readOptions = options;
+	}
+
+	/**
+	 * Releases the worker threads if they were created by this instance.
+	 */
+	public void shutdown() {
+		if (ownExecutor)
+			executor.shutdown();
+	}
+
+	private String canonical(File dir) {
+		try {
+			return dir.getCanonicalPath();
+		} catch (IOException e) {
+			return dir.getAbsolutePath();
+		}
+	}
+
+	/**
+	 * Submits the reading of the file, blocks while there are too many
+	 * pending files.
+	 */
+	private void submit(final File f, final AudioFileScanListener listener,
+			final Semaphore pending) throws InterruptedException {
+		final int options = readOptions;
+		pending.acquire();
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						AudioFile af;
+						try {
+							af = audioFileIO.readFile(f, options);
+						} catch (CannotReadException e) {
+							listener.fileFailed(f, e);
+							return;
+						} catch (RuntimeException e) {
+							// A reader failing unexpectedly on a damaged file
+							listener.fileFailed(f, new CannotReadException(
+									"\"" + f.getAbsolutePath() + "\" :" + e,
+									e));
+							return;
+						}
+						listener.fileRead(af);
+					} finally {
+						pending.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pending.release();
+			throw e;
+		}
+	}
+}
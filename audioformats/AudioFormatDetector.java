@@ -0,0 +1,133 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats;
+
+import java.io.IOException;
+
+import entagged.audioformats.generic.FileReadWindow;
+import entagged.audioformats.mp3.util.MPEGFrame;
+
+/**
+ * Recognizes the format of an audio file from its first bytes, regardless of
+ * its name.<br>
+ * The returned values are the extensions the readers and writers are
+ * registered with in {@link AudioFileIO}.
+ */
+public class AudioFormatDetector {
+
+	/**
+	 * The number of bytes read at the beginning of the file for the detection.
+	 */
+	public final static int HEADER_SIZE = 4096;
+
+	/**
+	 * Reads the beginning of the given file, and returns its format.<br>
+	 * The file pointer is set back to the first byte of the file, the bytes
+	 * read stay in the window's buffer for the reader.
+	 * 
+	 * @param raf
+	 *            The file to examine.
+	 * @return The format, or <code>null</code> if it could not be recognized.
+	 * @exception IOException
+	 *                If the file could not be read.
+	 */
+	public static String detect(FileReadWindow raf) throws IOException {
+		byte[] b = new byte[HEADER_SIZE];
+		raf.seek(0);
+		int read = raf.read(b);
+		raf.seek(0);
+		return detect(b, Math.max(read, 0));
+	}
+
+	/**
+	 * Returns the format of the file starting with the given bytes.
+	 * 
+	 * @param b
+	 *            The first bytes of the file.
+	 * @param length
+	 *            The number of valid bytes in <code>b</code>.
+	 * @return <code>"mp3"</code>, <code>"ogg"</code>, <code>"wav"</code>,
+	 *         <code>"mp4"</code> or <code>null</code> if the format could
+	 *         not be recognized.
+	 */
+	public static String detect(byte[] b, int length) {
+		if (startsWith(b, length, 0, "OggS"))
+			return "ogg";
+		if (startsWith(b, length, 0, "RIFF") && startsWith(b, length, 8, "WAVE"))
+			return "wav";
+		if (startsWith(b, length, 4, "ftyp"))
+			return "mp4";
+		if (startsWith(b, length, 0, "ID3"))
+			return "mp3";
+		if (findMPEGSync(b, length) != -1)
+			return "mp3";
+		return null;
+	}
+
+	/**
+	 * Searches for the first MPEG audio frame header in the given bytes.<br>
+	 * Except at the very beginning of the data, a header is only accepted if
+	 * the next one follows at the computed frame length, so random bytes of
+	 * other data are not mistaken for audio.
+	 * 
+	 * @param b
+	 *            The bytes to search.
+	 * @param length
+	 *            The number of valid bytes in <code>b</code>.
+	 * @return The offset of the frame header, or <code>-1</code>.
+	 */
+	private static int findMPEGSync(byte[] b, int length) {
+		for (int i = 0; i + 4 <= length; i++) {
+			int frameLength = getMPEGFrameLength(b, i);
+			if (frameLength <= 0)
+				continue;
+			if (i == 0)
+				return i;
+			int next = i + frameLength;
+			if (next + 4 <= length && getMPEGFrameLength(b, next) > 0)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the length of the MPEG audio frame whose header is at the given
+	 * offset, or <code>-1</code> if there is no valid header.
+	 */
+	private static int getMPEGFrameLength(byte[] b, int offset) {
+		int header = MPEGFrame.getHeader(b, offset);
+		if (!MPEGFrame.isHeader(header))
+			return -1;
+
+		// 0 for free bitrate or reserved version
+		int length = MPEGFrame.getFrameLength(header);
+		return length > 0 ? length : -1;
+	}
+
+	private static boolean startsWith(byte[] b, int length, int offset,
+			String magic) {
+		if (offset + magic.length() > length)
+			return false;
+		for (int i = 0; i < magic.length(); i++) {
+			if (b[offset + i] != (byte) magic.charAt(i))
+				return false;
+		}
+		return true;
+	}
+}
@@ -48,6 +48,32 @@ public class EncodingInfo {
 	 */
 	public final static String FIELD_CHANNEL = "CHANNB";
 
+	/**
+	 * The key for the name and version of the encoder.({@link String})<br>
+	 * Only set when known.
+	 * 
+	 * @see #content
+	 */
+	public final static String FIELD_ENCODER = "ENCODER";
+
+	/**
+	 * The key for the number of samples added by the encoder at the
+	 * beginning, which must be skipped for gapless playback.({@link Integer})<br>
+	 * Only set when known.
+	 * 
+	 * @see #content
+	 */
+	public final static String FIELD_ENCODER_DELAY = "ENCDELAY";
+
+	/**
+	 * The key for the number of samples added by the encoder at the end,
+	 * which must be skipped for gapless playback.({@link Integer})<br>
+	 * Only set when known.
+	 * 
+	 * @see #content
+	 */
+	public final static String FIELD_ENCODER_PADDING = "ENCPADDING";
+
 	/**
 	 * The key for the extra encoding information.({@link String})<br>
 	 * 
@@ -62,6 +88,58 @@ public class EncodingInfo {
 	 */
 	public final static String FIELD_LENGTH = "LENGTH";
 
+	/**
+	 * The key for the lowpass filter frequency in &quot;Hz&quot; used by the
+	 * encoder. ({@link Integer})<br>
+	 * Only set when known.
+	 * 
+	 * @see #content
+	 */
+	public final static String FIELD_LOWPASS = "LOWPASS";
+
+	/**
+	 * The key for the CRC-16 of the audio data, as stored by the encoder.
+	 * ({@link Integer})<br>
+	 * Only set when known.
+	 * 
+	 * @see #content
+	 */
+	public final static String FIELD_MUSIC_CRC = "MUSICCRC";
+
+	/**
+	 * The key for the length in bytes of the audio data, as stored by the
+	 * encoder. ({@link Long})<br>
+	 * Only set when known.
+	 * 
+	 * @see #content
+	 */
+	public final static String FIELD_MUSIC_LENGTH = "MUSICLENGTH";
+
+	/**
+	 * The key for the album ReplayGain in dB. ({@link Float})<br>
+	 * Only set when known.
+	 * 
+	 * @see #content
+	 */
+	public final static String FIELD_REPLAYGAIN_ALBUM_GAIN = "RGALBUMGAIN";
+
+	/**
+	 * The key for the peak signal amplitude, 1.0 being the full scale.
+	 * ({@link Float})<br>
+	 * Only set when known.
+	 * 
+	 * @see #content
+	 */
+	public final static String FIELD_REPLAYGAIN_PEAK = "RGPEAK";
+
+	/**
+	 * The key for the track ReplayGain in dB. ({@link Float})<br>
+	 * Only set when known.
+	 * 
+	 * @see #content
+	 */
+	public final static String FIELD_REPLAYGAIN_TRACK_GAIN = "RGTRACKGAIN";
+
 	/**
 	 * The key for the audio sample rate in &quot;Hz&quot;. ({@link Integer})<br>
 	 * 
@@ -122,6 +200,28 @@ public class EncodingInfo {
 		return ((Integer) content.get(FIELD_CHANNEL)).intValue();
 	}
 
+	/**
+	 * Returns the number of samples added by the encoder at the beginning,
+	 * which must be skipped for gapless playback.
+	 * 
+	 * @return The encoder delay, or -1 if unknown.
+	 */
+	public int getEncoderDelay() {
+		Integer delay = (Integer) content.get(FIELD_ENCODER_DELAY);
+		return delay == null ? -1 : delay.intValue();
+	}
+
+	/**
+	 * Returns the number of samples added by the encoder at the end, which
+	 * must be skipped for gapless playback.
+	 * 
+	 * @return The encoder padding, or -1 if unknown.
+	 */
+	public int getEncoderPadding() {
+		Integer padding = (Integer) content.get(FIELD_ENCODER_PADDING);
+		return padding == null ? -1 : padding.intValue();
+	}
+
 	/**
 	 * Returns the encoding type.
 	 * 
@@ -141,6 +241,18 @@ public class EncodingInfo {
 		return (String) content.get(FIELD_INFOS);
 	}
 
+	/**
+	 * Returns the value of the given field, for the fields without a
+	 * dedicated method.
+	 * 
+	 * @param key
+	 *            One of the FIELD_ constants.
+	 * @return The value, or <code>null</code> if the field is not set.
+	 */
+	public Object getField(String key) {
+		return content.get(key);
+	}
+
 	/**
 	 * This method returns the duration of the represented audio clip in
 	 * seconds.<br>
@@ -224,6 +336,18 @@ public class EncodingInfo {
 		content.put(FIELD_INFOS, infos);
 	}
 
+	/**
+	 * Sets the value of the given field.
+	 * 
+	 * @param key
+	 *            One of the FIELD_ constants.
+	 * @param value
+	 *            The value, of the type documented by the constant.
+	 */
+	public void setField(String key, Object value) {
+		content.put(key, value);
+	}
+
 	/**
 	 * This method sets the audio duration of the represented clip.<br>
 	 * 
@@ -20,8 +20,8 @@ package entagged.audioformats.generic;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import entagged.audioformats.Tag;
@@ -33,20 +33,22 @@ public abstract class AbstractTagCreator {
     }
     
     public ByteBuffer convert(Tag tag, int padding) throws UnsupportedEncodingException {
+        return serialize(tag).toByteBuffer(padding, null);
+    }
+    
+    /*
+     * Converts the tag to the format of this creator and encodes its fields,
+     * once. The result gives the size of the tag, and can then be written with
+     * the chosen padding.
+     */
+    public SerializedTag serialize(Tag tag) throws UnsupportedEncodingException {
         Tag compatibleTag = getCompatibleTag(tag);
-        
         List fields = createFields(compatibleTag);
-		int tagSize = computeTagLength(compatibleTag, fields);
-		
-		ByteBuffer buf = ByteBuffer.allocate( tagSize + padding );
-		create(compatibleTag, buf, fields, tagSize, padding);
-		
-		buf.rewind();
-		return buf;
+        return new SerializedTag(this, compatibleTag, fields, computeTagLength(compatibleTag, fields));
     }
     
 	protected List createFields(Tag tag) throws UnsupportedEncodingException {
-	    List fields = new LinkedList();
+	    List fields = new ArrayList();
 		
 		Iterator it = tag.getFields();
 		while(it.hasNext()) {
@@ -69,9 +71,7 @@ public abstract class AbstractTagCreator {
 	}
 	
 	public int getTagLength(Tag tag) throws UnsupportedEncodingException {
-	    Tag compatibleTag = getCompatibleTag(tag);
-		List fields = createFields(compatibleTag);
-		return computeTagLength(compatibleTag, fields);
+	    return serialize(tag).getSize();
 	}
 	
 	//This method is always called with a compatible tag, as returned from getCompatibleTag()
@@ -51,7 +51,8 @@ public interface AudioFileModificationListener {
 	 *            The original file on which the operation was started.
 	 * @param temporary
 	 *            The modified copy. (It may be of zero size if the original was
-	 *            modified)
+	 *            modified, or <code>null</code> if the original was modified
+	 *            in place without creating a copy)
 	 * @throws ModifyVetoException
 	 *             If the Results doesn't fit the expectations of the listener,
 	 *             it can prevent the replacement of the original by temporary.<br>
@@ -31,6 +31,8 @@ import entagged.audioformats.exceptions.CannotReadException;
  * This abstract class is the skeleton for tag readers. It handles the creation/closing of
  * the randomaccessfile objects and then call the subclass method getEncodingInfo and getTag.
  * These two method have to be implemented in te subclass.
+ * The file is accessed through a FileReadWindow, which buffers the reads, so the
+ * subclasses can do small reads and seeks without a system call for each.
  * 
  *@author	Raphael Slinckx
  *@version	$Id: AudioFileReader.java,v 1.9 2006/01/17 09:51:29 liree Exp $
@@ -38,26 +40,124 @@ import entagged.audioformats.exceptions.CannotReadException;
  */
 public abstract class AudioFileReader {
 	
+	/*
+	 * Read option, the encoding infos are read. Without it the AudioFile
+	 * contains empty encoding infos.
+	 */
+	public final static int READ_INFO = 1;
+	
+	/*
+	 * Read option, the tag is read. Without it the AudioFile contains an
+	 * empty tag, and cannot be written.
+	 */
+	public final static int READ_TAG = 2;
+	
+	/*
+	 * Reads both the encoding infos and the tag, this is the default.
+	 */
+	public final static int READ_ALL = READ_INFO | READ_TAG;
+	
+	/*
+	 * Read option, the fields of the tag are only decoded when they are first
+	 * accessed, so the fields never looked at cost nothing. Formats which don't
+	 * support it (all but ID3v2 for now) ignore it.
+	 */
+	public final static int LAZY_FIELDS = 4;
+	
+	/*
+	 * Read option, the picture data of the tag is not loaded but located in the
+	 * file, and only read when accessed or when the tag is written. This keeps
+	 * large cover pictures out of the heap. The file must not be modified by
+	 * other means in the meantime. Formats which don't support it (all but ID3v2
+	 * for now) ignore it.
+	 */
+	public final static int LAZY_PICTURES = 8;
+	
+	/*
+	 * Read option, the length and the bitrate are computed from all the audio
+	 * frames of the file instead of being estimated from the first ones. This
+	 * is slower as the whole file is read, but exact for the files without VBR
+	 * header. Formats which don't support it (all but MP3 for now) ignore it.
+	 */
+	public final static int EXACT_LENGTH = 16;
+	
 	/*
 	 * Returns the encoding info object associated wih the current File.
-	 * The subclass can assume the RAF pointer is at the first byte of the file.
-	 * The RandomAccessFile must be kept open after this function, but can point
-	 * at any offset in the file.
+	 * The subclass can assume the window pointer is at the first byte of the file.
+	 * The window can point at any offset in the file after this function.
 	 * 
-	 * @param raf The RandomAccessFile associtaed with the current file
-	 * @exception IOException is thrown when the RandomAccessFile operations throw it (you should never throw them manually)
+	 * @param raf The FileReadWindow associtaed with the current file
+	 * @exception IOException is thrown when the FileReadWindow operations throw it (you should never throw them manually)
 	 * @exception CannotReadException when an error occured during the parsing of the encoding infos
 	 */
-	protected abstract EncodingInfo getEncodingInfo( RandomAccessFile raf )  throws CannotReadException, IOException;
+	protected abstract EncodingInfo getEncodingInfo( FileReadWindow raf )  throws CannotReadException, IOException;
 	
 	/*
 	 * Same as above but returns the Tag contained in the file, or a new one.
 	 * 
-	 * @param raf The RandomAccessFile associted with the current file
-	 * @exception IOException is thrown when the RandomAccessFile operations throw it (you should never throw them manually)
+	 * @param raf The FileReadWindow associted with the current file
+	 * @exception IOException is thrown when the FileReadWindow operations throw it (you should never throw them manually)
 	 * @exception CannotReadException when an error occured during the parsing of the tag
 	 */
-	protected abstract Tag getTag( RandomAccessFile raf )  throws CannotReadException, IOException;
+	protected abstract Tag getTag( FileReadWindow raf )  throws CannotReadException, IOException;
+	
+	/*
+	 * Reads the encoding infos and the tag of the file, as requested by the
+	 * options. The default implementation calls getEncodingInfo and then getTag,
+	 * both from the first byte of the file, and skips the one not requested.
+	 * Formats where the infos and the tag are found along the same structures
+	 * override this method to produce both in a single walk through the file.
+	 * A tag that cannot be read must be replaced by getDefaultTag, an error in
+	 * the encoding infos must be thrown. The results are assembled by createAudioFile.
+	 * 
+	 * @param f The file to read
+	 * @param raf The FileReadWindow associted with the current file, pointing at its first byte
+	 * @param options READ_INFO and/or READ_TAG
+	 * @exception IOException is thrown when the FileReadWindow operations throw it (you should never throw them manually)
+	 * @exception CannotReadException when an error occured during the parsing of the encoding infos
+	 */
+	protected AudioFile readAudioFile( File f, FileReadWindow raf, int options )  throws CannotReadException, IOException {
+		EncodingInfo info = null;
+		if( (options & READ_INFO) != 0 )
+			info = getEncodingInfo(raf);
+		
+		Tag tag = null;
+		if( (options & READ_TAG) != 0 ) {
+			try {
+				raf.seek( 0 );
+				tag = getTag(raf);
+			} catch (CannotReadException e) {
+				tag = getDefaultTag(e);
+			}
+		}
+		
+		return createAudioFile(f, info, tag, options);
+	}
+	
+	/*
+	 * Creates the AudioFile from the parts read with the given options. The parts
+	 * that were not requested are left null by the readers, and replaced by empty
+	 * ones here.
+	 */
+	protected AudioFile createAudioFile( File f, EncodingInfo info, Tag tag, int options ) {
+		if( info == null )
+			info = new EncodingInfo();
+		if( tag == null )
+			tag = new GenericTag();
+		
+		return new AudioFile(f, info, tag, (options & READ_TAG) != 0);
+	}
+	
+	/*
+	 * Returns the tag to use when the tag of the file could not be read, after
+	 * reporting the problem.
+	 * 
+	 * @param e The error that occured while reading the tag
+	 */
+	protected Tag getDefaultTag( CannotReadException e ) {
+		System.err.println(e.getMessage());
+		return new GenericTag();
+	}
 	
 	/*
 	 * Reads the given file, and return an AudioFile object containing the Tag
@@ -68,40 +168,79 @@ public abstract class AudioFileReader {
 	 * @exception CannotReadException If anything went bad during the read of this file 
 	 */
 	public AudioFile read(File f) throws CannotReadException {
+		return read(f, READ_ALL);
+	}
+	
+	/*
+	 * Same as above, but only reads the parts of the file requested by the options.
+	 * 
+	 * @param f The file to read
+	 * @param options READ_INFO and/or READ_TAG
+	 * @exception CannotReadException If anything went bad during the read of this file 
+	 */
+	public AudioFile read(File f, int options) throws CannotReadException {
 		if (!f.canRead())
 			throw new CannotReadException("Can't read file \""+f.getAbsolutePath()+"\"");
 		
+		RandomAccessFile raf = null;
+		FileReadWindow window;
+		try{
+			raf = new RandomAccessFile( f, "r" );
+			window = new FileReadWindow( f, raf );
+		} catch ( Exception e ) {
+			closeQuietly(f, raf);
+			throw new CannotReadException("\""+f+"\" :"+e,e);
+		}
+		try{
+			return read(f, window, options);
+		}
+		finally {
+			closeQuietly(f, raf);
+		}
+	}
+	
+	private void closeQuietly(File f, RandomAccessFile raf) {
+		try{
+			if(raf != null)
+				raf.close();
+		}catch(Exception ex){
+			System.err.println("\""+f+"\" :"+ex);
+		}
+	}
+	
+	/*
+	 * Same as above, but reads the file through an already opened
+	 * window, whose file is not closed by this method. This allows the
+	 * caller to examine the file before choosing the reader without opening
+	 * or reading it twice.
+	 * 
+	 * @param f The file to read
+	 * @param raf The window on the file, the pointer can be at any offset
+	 * @exception CannotReadException If anything went bad during the read of this file 
+	 */
+	public AudioFile read(File f, FileReadWindow raf) throws CannotReadException {
+		return read(f, raf, READ_ALL);
+	}
+	
+	/*
+	 * Same as above, but only reads the parts of the file requested by the options.
+	 * 
+	 * @param f The file to read
+	 * @param raf The window on the file, the pointer can be at any offset
+	 * @param options READ_INFO and/or READ_TAG
+	 * @exception CannotReadException If anything went bad during the read of this file 
+	 */
+	public AudioFile read(File f, FileReadWindow raf, int options) throws CannotReadException {
 		if(f.length() <= 150)
 			throw new CannotReadException("Less than 150 byte \""+f.getAbsolutePath()+"\"");
 		
-		RandomAccessFile raf = null;
 		try{
-			raf = new RandomAccessFile( f, "r" );
 			raf.seek( 0 );
 			
-			EncodingInfo info = getEncodingInfo(raf);
-		
-			Tag tag;
-			try {
-				raf.seek( 0 );
-				tag = getTag(raf);
-			} catch (CannotReadException e) {
-				System.err.println(e.getMessage());
-				tag = new GenericTag();
-			}
-		
-			return new AudioFile(f, info, tag);
+			return readAudioFile(f, raf, options);
 			
 		} catch ( Exception e ) {
 			throw new CannotReadException("\""+f+"\" :"+e,e);
 		}
-		finally {
-				try{
-					if(raf != null)
-							raf.close();
-				}catch(Exception ex){
-					System.err.println("\""+f+"\" :"+ex);
-				}
-		}
 	}
 }
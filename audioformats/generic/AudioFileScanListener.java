@@ -0,0 +1,53 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.generic;
+
+import java.io.File;
+
+import entagged.audioformats.AudioFile;
+import entagged.audioformats.exceptions.CannotReadException;
+
+/**
+ * Classes implementing this interface receive the results of a library scan
+ * performed by {@link entagged.audioformats.AudioFileScanner}.<br>
+ * The methods are called from the worker threads of the scanner as soon as a
+ * file has been processed, so implementations must be thread safe.<br>
+ * 
+ * @see entagged.audioformats.AudioFileScanner
+ */
+public interface AudioFileScanListener {
+
+	/**
+	 * Notifies that the given file could not be read.<br>
+	 * 
+	 * @param file
+	 *            The file which failed.
+	 * @param cause
+	 *            The reason of the failure.
+	 */
+	public void fileFailed(File file, CannotReadException cause);
+
+	/**
+	 * Notifies that an audio file has been successfully read.<br>
+	 * 
+	 * @param file
+	 *            The file read, with its encoding infos and tag.
+	 */
+	public void fileRead(AudioFile file);
+}
@@ -21,6 +21,10 @@ package entagged.audioformats.generic;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 import entagged.audioformats.AudioFile;
 import entagged.audioformats.Tag;
@@ -31,7 +35,12 @@ import entagged.audioformats.exceptions.ModifyVetoException;
  * This abstract class is the skeleton for tag writers. It handles the
  * creation/closing of the randomaccessfile objects and then call the subclass
  * method writeTag or deleteTag. These two method have to be implemented in the
- * subclass.
+ * subclass.<br>
+ * One instance is shared by all threads, so subclasses must not keep any state
+ * about the file being processed in their fields. Different files can then be
+ * written concurrently.<br>
+ * When the tag is written to a temporary copy, the copy is synced to the disk
+ * and moved over the original atomically, so a crash never loses the file.
  * 
  * @author Raphael Slinckx
  * @version $Id: AudioFileWriter.java,v 1.10 2005/09/18 11:12:45 liree Exp $
@@ -43,7 +52,17 @@ public abstract class AudioFileWriter {
 	 * If not <code>null</code>, this listener is used to notify the listener
 	 * about modification events.<br>
 	 */
-	private AudioFileModificationListener modificationListener = null;
+	private volatile AudioFileModificationListener modificationListener = null;
+
+	/**
+	 * The padding left after the new tags, by the formats which support it.
+	 */
+	private volatile PaddingPolicy paddingPolicy = PaddingPolicy.DEFAULT;
+
+	/**
+	 * Counts the writes done in place and the ones which copied the file.
+	 */
+	private volatile WriteMetrics writeMetrics = new WriteMetrics();
 
 	/**
 	 * Delete the tag (if any) present in the given file
@@ -53,7 +72,7 @@ public abstract class AudioFileWriter {
 	 * @exception CannotWriteException
 	 *                if anything went wrong
 	 */
-	public synchronized void delete(AudioFile f) throws CannotWriteException {
+	public void delete(AudioFile f) throws CannotWriteException {
 		if (!f.canWrite())
 			throw new CannotWriteException("Can't write to file \""
 					+ f.getAbsolutePath() + "\"");
@@ -65,10 +84,8 @@ public abstract class AudioFileWriter {
 		RandomAccessFile raf = null;
 		RandomAccessFile rafTemp = null;
 		File tempF = null;
-		// Will be set to true on VetoException, causing the finally block to
-		// discard
-		// the tempfile.
-		boolean revert = false;
+		// will be set to the remaining file.
+		File result = f;
 		try {
 
 			tempF = File.createTempFile("entagged", ".tmp", f.getParentFile());
@@ -89,31 +106,14 @@ public abstract class AudioFileWriter {
 				throw new CannotWriteException(veto);
 			}
 
+			raf.close();
+			if (commit(f, tempF, rafTemp))
+				result = tempF;
 		} catch (Exception e) {
-			revert = true;
 			throw new CannotWriteException("\"" + f.getAbsolutePath() + "\" :"
 					+ e, e);
 		} finally {
-			// will be set to the remaining file.
-			File result = f;
-			try {
-				if (raf != null)
-					raf.close();
-				if (rafTemp != null)
-					rafTemp.close();
-
-				if (tempF.length() > 0 && !revert) {
-					f.delete();
-					tempF.renameTo(f);
-					result = tempF;
-				} else {
-					tempF.delete();
-				}
-			} catch (Exception ex) {
-				System.err.println("AudioFileWriter:113:\""
-						+ f.getAbsolutePath() + "\" or \""
-						+ tempF.getAbsolutePath() + "\" :" + ex);
-			}
+			discard(raf, rafTemp, result == tempF ? null : tempF);
 			// Notify listener
 			if (this.modificationListener != null) {
 				this.modificationListener.fileOperationFinished(result);
@@ -132,7 +132,7 @@ public abstract class AudioFileWriter {
 	 * @exception CannotWriteException
 	 *                if anything went wrong
 	 */
-	public synchronized void delete(RandomAccessFile raf,
+	public void delete(RandomAccessFile raf,
 			RandomAccessFile tempRaf) throws CannotWriteException, IOException {
 		raf.seek(0);
 		tempRaf.seek(0);
@@ -159,11 +159,52 @@ public abstract class AudioFileWriter {
 	 * @param listener
 	 *            The listener. <code>null</code> allowed to deregister.
 	 */
-	public synchronized void setAudioFileModificationListener(
+	public void setAudioFileModificationListener(
 			AudioFileModificationListener listener) {
 		this.modificationListener = listener;
 	}
 
+	/**
+	 * Returns the policy choosing the padding left after the new tags.
+	 */
+	public PaddingPolicy getPaddingPolicy() {
+		return this.paddingPolicy;
+	}
+
+	/**
+	 * Sets the policy choosing the padding left after a tag when it is
+	 * created, a larger padding allows more of the later edits to be written
+	 * in place. The formats without padding ignore it.
+	 * 
+	 * @param policy
+	 *            The policy, not <code>null</code>.
+	 */
+	public void setPaddingPolicy(PaddingPolicy policy) {
+		if (policy == null)
+			throw new IllegalArgumentException("The padding policy is null");
+		this.paddingPolicy = policy;
+	}
+
+	/**
+	 * Returns the counters of the writes done by this writer.
+	 */
+	public WriteMetrics getWriteMetrics() {
+		return this.writeMetrics;
+	}
+
+	/**
+	 * Sets the counters updated by the writes, the same instance can be shared
+	 * by several writers.
+	 * 
+	 * @param metrics
+	 *            The counters, not <code>null</code>.
+	 */
+	public void setWriteMetrics(WriteMetrics metrics) {
+		if (metrics == null)
+			throw new IllegalArgumentException("The write metrics are null");
+		this.writeMetrics = metrics;
+	}
+
 	/**
 	 * Write the tag (if not empty) present in the AudioFile int the associated
 	 * File
@@ -173,8 +214,13 @@ public abstract class AudioFileWriter {
 	 * @exception CannotWriteException
 	 *                if anything went wrong
 	 */
-	public synchronized void write(AudioFile af) throws CannotWriteException {
+	public void write(AudioFile af) throws CannotWriteException {
 		// Preliminary checks
+		if (!af.isTagRead())
+			throw new CannotWriteException("The tag of \""
+					+ af.getAbsolutePath()
+					+ "\" has not been read, it cannot be written");
+
 		if (af.getTag().isEmpty()) {
 			delete(af);
 			return;
@@ -191,57 +237,176 @@ public abstract class AudioFileWriter {
 		RandomAccessFile raf = null;
 		RandomAccessFile rafTemp = null;
 		File tempF = null;
-		// Will be set to true in exception block to not replace original file.
-		boolean cannotWrite = false;
+		// will be set to the remaining file.
+		File result = af;
 		try {
-
-			tempF = File.createTempFile("entagged", ".tmp", af.getParentFile());
-			rafTemp = new RandomAccessFile(tempF, "rw");
 			raf = new RandomAccessFile(af, "rw");
 			raf.seek(0);
-			rafTemp.seek(0);
 			try {
 				if (this.modificationListener != null) {
 					this.modificationListener.fileWillBeModified(af, false);
 				}
-				writeTag(af.getTag(), raf, rafTemp);
+				SerializedTag serialized = serializeTag(af.getTag());
+				if (writeTagInPlace(af.getTag(), serialized, raf)) {
+					if (this.modificationListener != null) {
+						this.modificationListener.fileModified(af, null);
+					}
+					raf.close();
+					this.writeMetrics.addInPlaceWrite();
+					return;
+				}
+
+				tempF = File.createTempFile("entagged", ".tmp", af
+						.getParentFile());
+				rafTemp = new RandomAccessFile(tempF, "rw");
+				raf.seek(0);
+				rafTemp.seek(0);
+				writeTag(af.getTag(), serialized, raf, rafTemp);
 				if (this.modificationListener != null) {
 					this.modificationListener.fileModified(af, tempF);
 				}
 			} catch (ModifyVetoException veto) {
 				throw new CannotWriteException(veto);
 			}
+
+			raf.close();
+			long copied = rafTemp.length();
+			if (commit(af, tempF, rafTemp)) {
+				result = tempF;
+				this.writeMetrics.addRewrite(copied);
+			} else {
+				this.writeMetrics.addInPlaceWrite();
+			}
 		} catch (Exception e) {
-			cannotWrite = true;
 			throw new CannotWriteException("\"" + af.getAbsolutePath() + "\" :"
-					+ e);
+					+ e, e);
 		} finally {
-			File result = af;
-			try {
-				if (raf != null)
-					raf.close();
-				if (rafTemp != null)
-					rafTemp.close();
-
-				if (!cannotWrite && tempF.length() > 0) {
-					af.delete();
-					tempF.renameTo(af);
-					result = tempF;
-				} else {
-					tempF.delete();
-				}
-
-			} catch (Exception ex) {
-				System.err.println("AudioFileWriter:165:\""
-						+ af.getAbsolutePath() + "\" or \""
-						+ tempF.getAbsolutePath() + "\" :" + ex);
-			}
+			discard(raf, rafTemp, result == tempF ? null : tempF);
 			if (this.modificationListener != null) {
 				this.modificationListener.fileOperationFinished(result);
 			}
 		}
 	}
 
+	/**
+	 * Replaces the original file by the temporary copy, unless the copy is
+	 * empty because the format modified the original directly.<br>
+	 * The copy is forced to the disk and closed, then moved over the original
+	 * in a single atomic step when the file system supports it. A crash at any
+	 * time leaves either the original or the complete copy under the name of
+	 * the original, never a missing or a partial file.
+	 * 
+	 * @param original
+	 *            The original file, already closed
+	 * @param temp
+	 *            The temporary copy
+	 * @param rafTemp
+	 *            The opened copy, closed by this method
+	 * @return <code>true</code> if the original has been replaced.
+	 * @throws IOException
+	 *             if the copy cannot be synced or moved, the original is then
+	 *             left untouched.
+	 */
+	private boolean commit(File original, File temp, RandomAccessFile rafTemp)
+			throws IOException {
+		if (rafTemp.length() == 0) {
+			rafTemp.close();
+			return false;
+		}
+
+		rafTemp.getChannel().force(true);
+		rafTemp.close();
+
+		Path source = temp.toPath();
+		Path target = original.toPath();
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			// Still never leaves the original missing
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the files and deletes the unused temporary file, if any. This
+	 * is done after the operation succeeded, where they are already closed, or
+	 * after it failed, where the exception being thrown already reports the
+	 * failure, so the errors met here are ignored.
+	 */
+	private void discard(RandomAccessFile raf, RandomAccessFile rafTemp,
+			File tempF) {
+		try {
+			if (raf != null)
+				raf.close();
+		} catch (IOException e) {
+			// Reported by the failure of the operation
+		}
+		try {
+			if (rafTemp != null)
+				rafTemp.close();
+		} catch (IOException e) {
+			// Reported by the failure of the operation
+		}
+		if (tempF != null)
+			tempF.delete();
+	}
+
+	/**
+	 * Called once before the tag is written, to encode it when the format can
+	 * do so ahead of time. The result is passed to writeTagInPlace and then to
+	 * writeTag, so the tag is not encoded again when it does not fit in place.
+	 * The default implementation returns <code>null</code>.
+	 * 
+	 * @return The encoded tag, or <code>null</code>.
+	 * @exception CannotWriteException
+	 *                when an error occured during the generation of the tag
+	 */
+	protected SerializedTag serializeTag(Tag tag) throws CannotWriteException,
+			IOException {
+		return null;
+	}
+
+	/**
+	 * Called before writeTag, to write the tag directly in the file when this
+	 * can be done without moving the audio data, for example when the new tag
+	 * fits in the space of the old one. No temporary file is created then.
+	 * The default implementation returns <code>false</code>.
+	 * 
+	 * This method can assume the raf is pointing to the first byte of the
+	 * file. It must not close it, and must leave the file untouched when it
+	 * returns <code>false</code>.
+	 * 
+	 * @param serialized
+	 *            The tag as returned by serializeTag
+	 * @return <code>true</code> if the tag has been written.
+	 * @exception IOException
+	 *                is thrown when the RandomAccessFile operations throw it
+	 *                (you should never throw them manually)
+	 * @exception CannotWriteException
+	 *                when an error occured during the generation of the tag
+	 */
+	protected boolean writeTagInPlace(Tag tag, SerializedTag serialized,
+			RandomAccessFile raf) throws CannotWriteException, IOException {
+		return false;
+	}
+
+	/**
+	 * Writes the tag when it could not be written in place, with the encoded
+	 * tag returned by serializeTag. The default implementation calls
+	 * {@link #writeTag(Tag, RandomAccessFile, RandomAccessFile)}, see there
+	 * for the parameters.
+	 * 
+	 * @param serialized
+	 *            The tag as returned by serializeTag
+	 */
+	protected void writeTag(Tag tag, SerializedTag serialized,
+			RandomAccessFile raf, RandomAccessFile rafTemp)
+			throws CannotWriteException, IOException {
+		writeTag(tag, raf, rafTemp);
+	}
+
 	/**
 	 * This is called when a tag has to be written in a file. Three parameters
 	 * are provided, the tag to write (not empty) Two randomaccessfiles, the
@@ -0,0 +1,49 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.generic;
+
+import java.util.List;
+
+/**
+ * A modification listener which receives the end of the operations of a batch
+ * write in one call.<br>
+ * When files are written with {@link entagged.audioformats.AudioFileIO#writeFiles(java.util.Collection)},
+ * {@link #fileWillBeModified(entagged.audioformats.AudioFile, boolean)} and
+ * {@link #fileModified(entagged.audioformats.AudioFile, java.io.File)} are
+ * not batched: they are still sent for each file, from the threads writing
+ * them and possibly at the same time, as they allow to veto the
+ * modification. Only {@link #fileOperationFinished(java.io.File)}
+ * is replaced by a single {@link #filesOperationFinished(List)} sent from the
+ * calling thread once the whole batch is written.<br>
+ * The listeners not implementing this interface receive one
+ * fileOperationFinished call for each file at the end of the batch instead.
+ */
+public interface BatchModificationListener extends
+		AudioFileModificationListener {
+
+	/**
+	 * Informs the listener that the files of a batch have been processed.
+	 * 
+	 * @param results
+	 *            The remaining files, as given to
+	 *            {@link #fileOperationFinished(java.io.File)}, in no
+	 *            particular order.
+	 */
+	public void filesOperationFinished(List results);
+}
@@ -0,0 +1,87 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.generic;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides the buffers in which the tags are serialized, reusing the same
+ * buffer for the successive writes of a thread instead of allocating a new
+ * one each time.<br>
+ * Each thread has its own buffer, which grows as needed. A buffer returned by
+ * {@link #get(int)} is only valid until the next call to get from the same
+ * thread, so it must not be kept after the write it was requested for.
+ * Buffers larger than the retained size, e.g. for tags holding large
+ * pictures, are allocated for the single use and not kept.<br>
+ * An instance can be shared by all threads.
+ */
+public class ByteBufferPool {
+
+	/**
+	 * The largest buffer kept by default for each thread.
+	 */
+	public final static int DEFAULT_RETAINED_SIZE = 256 * 1024;
+
+	private final int retainedSize;
+
+	private final ThreadLocal buffers = new ThreadLocal();
+
+	/**
+	 * Creates a pool keeping buffers of up to
+	 * {@link #DEFAULT_RETAINED_SIZE} bytes.
+	 */
+	public ByteBufferPool() {
+		this(DEFAULT_RETAINED_SIZE);
+	}
+
+	/**
+	 * Creates a pool keeping buffers of up to the given size.
+	 * 
+	 * @param retainedSize
+	 *            The largest buffer kept for each thread
+	 */
+	public ByteBufferPool(int retainedSize) {
+		this.retainedSize = retainedSize;
+	}
+
+	/**
+	 * Returns a buffer of the given size, its position is 0 and its limit the
+	 * size. Its content is undefined.
+	 * 
+	 * @param size
+	 *            The number of bytes needed
+	 * @return The buffer, valid until the next call from the same thread.
+	 */
+	public ByteBuffer get(int size) {
+		if (size > retainedSize)
+			return ByteBuffer.allocate(size);
+
+		ByteBuffer buf = (ByteBuffer) buffers.get();
+		if (buf == null || buf.capacity() < size) {
+			// Grows by steps, so that slightly growing tags don't reallocate
+			int capacity = Math.min(retainedSize, Math.max(size,
+					buf == null ? 4096 : buf.capacity() * 2));
+			buf = ByteBuffer.allocate(capacity);
+			buffers.set(buf);
+		}
+		buf.clear();
+		buf.limit(size);
+		return buf;
+	}
+}
@@ -0,0 +1,335 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.generic;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered read access to an audio file.<br>
+ * The readers used to work directly on a {@link RandomAccessFile}, where each
+ * small <code>read()</code> or <code>seek()</code> ends up in a system call.
+ * This class reads the file through its {@link FileChannel} in blocks of
+ * {@link #BUFFER_SIZE} bytes, and serves the small reads out of that block. It
+ * offers the subset of the {@link RandomAccessFile} methods used by the
+ * readers, with the same semantics, so parsing a header usually costs one or
+ * two large reads.<br>
+ * Reads larger than the buffer are done directly into the destination array.
+ * <br>
+ * The channel is read with absolute positions, so the file pointer of the
+ * underlying {@link RandomAccessFile} is never moved. This class does not
+ * close the file, and is not meant to be shared by threads.
+ */
+public class FileReadWindow {
+
+	/**
+	 * Size of the block read from the file at once.
+	 */
+	public final static int BUFFER_SIZE = 65536;
+
+	/**
+	 * The buffer, its valid content is <code>[0, bufferLength[</code>.
+	 */
+	private final byte[] buffer;
+
+	/**
+	 * Number of valid bytes in the buffer.
+	 */
+	private int bufferLength = 0;
+
+	/**
+	 * Offset in the file of the first byte of the buffer.
+	 */
+	private long bufferStart = 0;
+
+	/**
+	 * The channel of the file.
+	 */
+	private final FileChannel fc;
+
+	/**
+	 * The file, if known.
+	 */
+	private final File file;
+
+	/**
+	 * The length of the file, read once.
+	 */
+	private final long length;
+
+	/**
+	 * Current offset in the file.
+	 */
+	private long position = 0;
+
+	/**
+	 * Creates a window on the given file, starting at offset 0.
+	 * 
+	 * @param raf
+	 *            The file opened for reading.
+	 * @throws IOException
+	 *             If the length of the file could not be read.
+	 */
+	public FileReadWindow(RandomAccessFile raf) throws IOException {
+		this(null, raf, BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a window on the given file, starting at offset 0.
+	 * 
+	 * @param file
+	 *            The file, used to create {@link FileRegion} on it.
+	 * @param raf
+	 *            The file opened for reading.
+	 * @throws IOException
+	 *             If the length of the file could not be read.
+	 */
+	public FileReadWindow(File file, RandomAccessFile raf) throws IOException {
+		this(file, raf, BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a window on the given file, with the given buffer size.
+	 * 
+	 * @param file
+	 *            The file, or <code>null</code> if unknown.
+	 * @param raf
+	 *            The file opened for reading.
+	 * @param bufferSize
+	 *            The number of bytes read at once.
+	 * @throws IOException
+	 *             If the length of the file could not be read.
+	 */
+	public FileReadWindow(File file, RandomAccessFile raf, int bufferSize)
+			throws IOException {
+		this.file = file;
+		this.fc = raf.getChannel();
+		this.length = fc.size();
+		this.buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * Loads the block containing the given offset into the buffer. When
+	 * reading backwards (the offset is just before the current buffer), the
+	 * block ending at the current buffer is loaded instead, so that scanning a
+	 * file from its end doesn't read each byte separately.
+	 * 
+	 * @param pos
+	 *            The offset that has to be in the buffer.
+	 * @throws IOException
+	 *             On I/O errors.
+	 */
+	private void fill(long pos) throws IOException {
+		long start = pos;
+		if (pos < bufferStart && pos >= bufferStart - buffer.length)
+			start = bufferStart - buffer.length;
+		if (start < 0)
+			start = 0;
+
+		bufferStart = start;
+		bufferLength = 0;
+		ByteBuffer bb = ByteBuffer.wrap(buffer);
+		while (bb.hasRemaining()) {
+			int read = fc.read(bb, bufferStart + bb.position());
+			if (read < 0)
+				break;
+		}
+		bufferLength = bb.position();
+	}
+
+	/**
+	 * @return The channel of the file.
+	 */
+	public FileChannel getChannel() {
+		return fc;
+	}
+
+	/**
+	 * @return The file, or <code>null</code> if it is unknown.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return The current offset in the file.
+	 */
+	public long getFilePointer() {
+		return position;
+	}
+
+	/**
+	 * @return The length of the file.
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * Reads one byte.
+	 * 
+	 * @return The byte (0 to 255), or -1 at the end of the file.
+	 * @throws IOException
+	 *             On I/O errors.
+	 */
+	public int read() throws IOException {
+		if (position >= length)
+			return -1;
+		if (position < bufferStart || position >= bufferStart + bufferLength)
+			fill(position);
+		if (position >= bufferStart + bufferLength)
+			return -1;
+		return buffer[(int) (position++ - bufferStart)] & 0xFF;
+	}
+
+	/**
+	 * Reads up to <code>b.length</code> bytes.
+	 * 
+	 * @see #read(byte[], int, int)
+	 */
+	public int read(byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	/**
+	 * Reads up to <code>len</code> bytes into the given array. Unlike a
+	 * stream, less bytes are only returned at the end of the file.
+	 * 
+	 * @param b
+	 *            The destination array.
+	 * @param off
+	 *            The offset in the array.
+	 * @param len
+	 *            The number of bytes to read.
+	 * @return The number of bytes read, or -1 at the end of the file.
+	 * @throws IOException
+	 *             On I/O errors.
+	 */
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (position >= length)
+			return -1;
+
+		int done = 0;
+		while (done < len && position < length) {
+			if (position >= bufferStart && position < bufferStart + bufferLength) {
+				// Serve from the buffer
+				int inBuffer = (int) (position - bufferStart);
+				int count = Math.min(len - done, bufferLength - inBuffer);
+				System.arraycopy(buffer, inBuffer, b, off + done, count);
+				done += count;
+				position += count;
+			} else if (len - done >= buffer.length) {
+				// Large read, bypass the buffer
+				ByteBuffer bb = ByteBuffer.wrap(b, off + done, len - done);
+				int read = fc.read(bb, position);
+				if (read < 0)
+					break;
+				done += read;
+				position += read;
+			} else {
+				fill(position);
+				if (bufferLength == 0 || position >= bufferStart + bufferLength)
+					break;
+			}
+		}
+		return done == 0 ? -1 : done;
+	}
+
+	/**
+	 * Reads one signed byte.
+	 * 
+	 * @return The byte.
+	 * @throws EOFException
+	 *             At the end of the file.
+	 * @throws IOException
+	 *             On I/O errors.
+	 */
+	public byte readByte() throws IOException {
+		int b = read();
+		if (b < 0)
+			throw new EOFException();
+		return (byte) b;
+	}
+
+	/**
+	 * Reads exactly <code>b.length</code> bytes.
+	 * 
+	 * @see #readFully(byte[], int, int)
+	 */
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	/**
+	 * Reads exactly <code>len</code> bytes into the given array.
+	 * 
+	 * @param b
+	 *            The destination array.
+	 * @param off
+	 *            The offset in the array.
+	 * @param len
+	 *            The number of bytes to read.
+	 * @throws EOFException
+	 *             If the end of the file is reached before.
+	 * @throws IOException
+	 *             On I/O errors.
+	 */
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		if (read(b, off, len) != len && len != 0)
+			throw new EOFException();
+	}
+
+	/**
+	 * Sets the current offset in the file. It may be set beyond the end of the
+	 * file, reads will then return -1.
+	 * 
+	 * @param pos
+	 *            The new offset.
+	 * @throws IOException
+	 *             If the offset is negative.
+	 */
+	public void seek(long pos) throws IOException {
+		if (pos < 0)
+			throw new IOException("Negative seek offset");
+		position = pos;
+	}
+
+	/**
+	 * Skips up to <code>n</code> bytes, without going beyond the end of the
+	 * file.
+	 * 
+	 * @param n
+	 *            The number of bytes to skip.
+	 * @return The number of bytes skipped.
+	 */
+	public int skipBytes(int n) {
+		if (n <= 0)
+			return 0;
+		long newPosition = Math.min(position + n, Math.max(length, position));
+		int skipped = (int) (newPosition - position);
+		position = newPosition;
+		return skipped;
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.generic;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A part of a file, which is read only when needed.<br>
+ * It is used by the readers to refer to large data, like pictures, without
+ * loading it. The region is only valid as long as the file is not modified,
+ * the tag fields using one load their data before the tag is written.
+ */
+public class FileRegion {
+
+	/**
+	 * The file.
+	 */
+	private final File file;
+
+	/**
+	 * The length of the region.
+	 */
+	private final long length;
+
+	/**
+	 * The offset of the region in the file.
+	 */
+	private final long offset;
+
+	/**
+	 * Creates an instance.
+	 * 
+	 * @param file
+	 *            The file.
+	 * @param offset
+	 *            The offset of the region in the file.
+	 * @param length
+	 *            The length of the region.
+	 */
+	public FileRegion(File file, long offset, long length) {
+		this.file = file;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * @return The file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return The length of the region.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return The offset of the region in the file.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Opens a stream on the content of the region.
+	 * 
+	 * @return A stream which ends with the region, it must be closed.
+	 * @throws IOException
+	 *             If the file could not be opened.
+	 */
+	public InputStream openStream() throws IOException {
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			in.getChannel().position(offset);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		return new FilterInputStream(in) {
+			private long remaining = length;
+
+			public int available() throws IOException {
+				return (int) Math.min(super.available(), remaining);
+			}
+
+			public boolean markSupported() {
+				return false;
+			}
+
+			public int read() throws IOException {
+				if (remaining <= 0)
+					return -1;
+				int b = super.read();
+				if (b >= 0)
+					remaining--;
+				return b;
+			}
+
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (remaining <= 0)
+					return -1;
+				int read = super.read(b, off, (int) Math.min(len, remaining));
+				if (read > 0)
+					remaining -= read;
+				return read;
+			}
+
+			public long skip(long n) throws IOException {
+				long skipped = super.skip(Math.min(n, remaining));
+				remaining -= skipped;
+				return skipped;
+			}
+		};
+	}
+
+	/**
+	 * Reads the whole region into memory.
+	 * 
+	 * @return The content of the region.
+	 * @throws IOException
+	 *             If the file could not be read, or is shorter than expected.
+	 */
+	public byte[] read() throws IOException {
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("Region too large: " + length);
+
+		byte[] b = new byte[(int) length];
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			raf.seek(offset);
+			raf.readFully(b);
+		} finally {
+			raf.close();
+		}
+		return b;
+	}
+
+	/**
+	 * (overridden)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return file + "[" + offset + "+" + length + "]";
+	}
+
+	/**
+	 * Copies the region to the given channel, without going through the Java
+	 * heap when the system allows it.
+	 * 
+	 * @param target
+	 *            The channel to write to.
+	 * @return The number of bytes written.
+	 * @throws IOException
+	 *             If the file could not be read or is shorter than expected,
+	 *             or on write errors.
+	 */
+	public long transferTo(WritableByteChannel target) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel fc = raf.getChannel();
+			long done = 0;
+			while (done < length) {
+				long count = fc.transferTo(offset + done, length - done, target);
+				if (count <= 0) {
+					if (offset + done >= fc.size())
+						throw new IOException("Unexpected end of file " + this);
+					// Some channels don't accept transfers, copy by hand
+					ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(
+							length - done, FileReadWindow.BUFFER_SIZE));
+					fc.read(buffer, offset + done);
+					buffer.flip();
+					count = target.write(buffer);
+				}
+				done += count;
+			}
+			return done;
+		} finally {
+			raf.close();
+		}
+	}
+}
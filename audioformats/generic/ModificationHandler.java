@@ -19,15 +19,20 @@
 package entagged.audioformats.generic;
 
 import java.io.File;
-import java.util.Enumeration;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import entagged.audioformats.AudioFile;
 import entagged.audioformats.exceptions.ModifyVetoException;
 
 /**
  * This class multicasts the events to multiple listener instances.<br>
- * Additionally the Vetos are handled. (other listeners are notified).
+ * Additionally the Vetos are handled. (other listeners are notified).<br>
+ * The events are sent from several threads when files are written
+ * concurrently, so the listeners are kept in a list which is iterated without
+ * locking.
  * 
  * @author Christian Laireiter
  */
@@ -36,7 +41,13 @@ public class ModificationHandler implements AudioFileModificationListener {
 	/**
 	 * The listeners to wich events are broadcasted are stored here.
 	 */
-	private Vector listeners = new Vector();
+	private final CopyOnWriteArrayList listeners = new CopyOnWriteArrayList();
+
+	/**
+	 * The results of the operations done by the current thread while it writes
+	 * a batch, <code>null</code> outside of a batch.
+	 */
+	private final ThreadLocal collected = new ThreadLocal();
 
 	/**
 	 * This method adds an {@link AudioFileModificationListener}
@@ -45,8 +56,50 @@ public class ModificationHandler implements AudioFileModificationListener {
 	 *            Listener to add.
 	 */
 	public void addAudioFileModificationListener(AudioFileModificationListener l) {
-		if (!this.listeners.contains(l)) {
-			this.listeners.add(l);
+		this.listeners.addIfAbsent(l);
+	}
+
+	/**
+	 * Starts collecting the results of the operations done by the current
+	 * thread, instead of sending them with fileOperationFinished.
+	 */
+	public void startCollecting() {
+		this.collected.set(new ArrayList());
+	}
+
+	/**
+	 * Stops collecting the results of the current thread.
+	 * 
+	 * @return The results collected since {@link #startCollecting()}.
+	 */
+	public List stopCollecting() {
+		List results = (List) this.collected.get();
+		this.collected.remove();
+		return results == null ? new ArrayList() : results;
+	}
+
+	/**
+	 * Sends the results of a batch, with a single call to the
+	 * {@link BatchModificationListener}s and one call per file to the others.
+	 * 
+	 * @param results
+	 *            The remaining files.
+	 */
+	public void filesOperationFinished(List results) {
+		if (results.isEmpty())
+			return;
+
+		Iterator it = this.listeners.iterator();
+		while (it.hasNext()) {
+			AudioFileModificationListener current = (AudioFileModificationListener) it
+					.next();
+			if (current instanceof BatchModificationListener) {
+				((BatchModificationListener) current)
+						.filesOperationFinished(results);
+			} else {
+				for (int i = 0; i < results.size(); i++)
+					current.fileOperationFinished((File) results.get(i));
+			}
 		}
 	}
 
@@ -58,10 +111,10 @@ public class ModificationHandler implements AudioFileModificationListener {
 	 */
 	public void fileModified(AudioFile original, File temporary)
 			throws ModifyVetoException {
-		Enumeration enumer = this.listeners.elements();
-		while (enumer.hasMoreElements()) {
-			AudioFileModificationListener current = (AudioFileModificationListener) enumer
-					.nextElement();
+		Iterator it = this.listeners.iterator();
+		while (it.hasNext()) {
+			AudioFileModificationListener current = (AudioFileModificationListener) it
+					.next();
 			try {
 				current.fileModified(original, temporary);
 			} catch (ModifyVetoException e) {
@@ -77,10 +130,16 @@ public class ModificationHandler implements AudioFileModificationListener {
 	 * @see entagged.audioformats.generic.AudioFileModificationListener#fileOperationFinished(java.io.File)
 	 */
 	public void fileOperationFinished(File result) {
-		Enumeration enumer = this.listeners.elements();
-		while (enumer.hasMoreElements()) {
-			AudioFileModificationListener current = (AudioFileModificationListener) enumer
-					.nextElement();
+		List results = (List) this.collected.get();
+		if (results != null) {
+			results.add(result);
+			return;
+		}
+
+		Iterator it = this.listeners.iterator();
+		while (it.hasNext()) {
+			AudioFileModificationListener current = (AudioFileModificationListener) it
+					.next();
 			current.fileOperationFinished(result);
 		}
 	}
@@ -93,10 +152,10 @@ public class ModificationHandler implements AudioFileModificationListener {
 	 */
 	public void fileWillBeModified(AudioFile file, boolean delete)
 			throws ModifyVetoException {
-		Enumeration enumer = this.listeners.elements();
-		while (enumer.hasMoreElements()) {
-			AudioFileModificationListener current = (AudioFileModificationListener) enumer
-					.nextElement();
+		Iterator it = this.listeners.iterator();
+		while (it.hasNext()) {
+			AudioFileModificationListener current = (AudioFileModificationListener) it
+					.next();
 			try {
 				current.fileWillBeModified(file, delete);
 			} catch (ModifyVetoException e) {
@@ -114,9 +173,7 @@ public class ModificationHandler implements AudioFileModificationListener {
 	 */
 	public void removeAudioFileModificationListener(
 			AudioFileModificationListener l) {
-		if (this.listeners.contains(l)) {
-			this.listeners.remove(l);
-		}
+		this.listeners.remove(l);
 	}
 
 	/**
@@ -128,10 +185,10 @@ public class ModificationHandler implements AudioFileModificationListener {
 	 */
 	public void vetoThrown(AudioFileModificationListener cause,
 			AudioFile original, ModifyVetoException veto) {
-		Enumeration enumer = this.listeners.elements();
-		while (enumer.hasMoreElements()) {
-			AudioFileModificationListener current = (AudioFileModificationListener) enumer
-					.nextElement();
+		Iterator it = this.listeners.iterator();
+		while (it.hasNext()) {
+			AudioFileModificationListener current = (AudioFileModificationListener) it
+					.next();
 			current.vetoThrown(cause, original, veto);
 		}
 	}
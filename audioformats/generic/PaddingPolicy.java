@@ -0,0 +1,125 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.generic;
+
+/**
+ * Chooses the padding left after a tag when it is created. The padding allows
+ * the later edits that make the tag grow to be written in place. Without
+ * enough padding the whole audio file has to be copied behind the larger tag.
+ * <br>
+ * The padding is the given percentage of the tag size, bounded by a minimum
+ * and a maximum. The total of the tag and its padding is then rounded up to a
+ * multiple of the alignment, e.g. 4KB, so that the audio data starts on a
+ * block boundary.<br>
+ * Subclasses can override {@link #getPadding(int, long)} to use other rules,
+ * for example based on the size of the file.
+ */
+public class PaddingPolicy {
+
+	/**
+	 * A fixed padding of 4000 bytes, as written by the library before the
+	 * policies existed. This is the default policy of the writers.
+	 */
+	public final static PaddingPolicy DEFAULT = new PaddingPolicy(4000, 0, 1,
+			4000);
+
+	/**
+	 * At least 4KB and 10% of the tag, at most 1MB, the tag with its padding
+	 * being rounded up to a multiple of 4KB.
+	 */
+	public final static PaddingPolicy ADAPTIVE = new PaddingPolicy(4096, 10,
+			4096, 1024 * 1024);
+
+	private final int minimum;
+
+	private final int percent;
+
+	private final int alignment;
+
+	private final int maximum;
+
+	/**
+	 * Creates a policy.
+	 * 
+	 * @param minimum
+	 *            The smallest padding
+	 * @param percent
+	 *            The padding as a percentage of the tag size
+	 * @param alignment
+	 *            The multiple the tag with its padding is rounded up to, 1 for
+	 *            none
+	 * @param maximum
+	 *            The largest padding, before the alignment
+	 * @throws IllegalArgumentException
+	 *             if a value is negative, the alignment is 0 or the maximum is
+	 *             lower than the minimum.
+	 */
+	public PaddingPolicy(int minimum, int percent, int alignment, int maximum) {
+		if (minimum < 0 || percent < 0 || alignment < 1 || maximum < minimum)
+			throw new IllegalArgumentException("Invalid padding policy: "
+					+ minimum + ", " + percent + "%, " + alignment + ", "
+					+ maximum);
+		this.minimum = minimum;
+		this.percent = percent;
+		this.alignment = alignment;
+		this.maximum = maximum;
+	}
+
+	/**
+	 * Returns the padding to write after a new tag.
+	 * 
+	 * @param tagSize
+	 *            The size of the tag without padding, headers included
+	 * @param fileSize
+	 *            The size of the file before the tag is written
+	 * @return The number of padding bytes.
+	 */
+	public int getPadding(int tagSize, long fileSize) {
+		long padding = (long) tagSize * percent / 100;
+		padding = Math.min(Math.max(padding, minimum), maximum);
+
+		if (alignment > 1) {
+			long total = tagSize + padding;
+			total = (total + alignment - 1) / alignment * alignment;
+			padding = total - tagSize;
+		}
+		return (int) padding;
+	}
+
+	public int getAlignment() {
+		return alignment;
+	}
+
+	public int getMaximum() {
+		return maximum;
+	}
+
+	public int getMinimum() {
+		return minimum;
+	}
+
+	public int getPercent() {
+		return percent;
+	}
+
+	public String toString() {
+		return "PaddingPolicy[min=" + minimum + ", " + percent + "%, align="
+				+ alignment + ", max=" + maximum + "]";
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.generic;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import entagged.audioformats.Tag;
+
+/**
+ * A tag whose fields have been encoded by a tag creator, see
+ * {@link AbstractTagCreator#serialize(Tag)}. Its size is known, so the
+ * padding or the place where it is written can be chosen from it, and it can
+ * then be written any number of times without encoding the fields again.<br>
+ * The tag must not be modified once serialized, the fields would not be
+ * updated.
+ */
+public class SerializedTag {
+
+	private final AbstractTagCreator creator;
+
+	private final Tag tag;
+
+	private final List fields;
+
+	private final int size;
+
+	SerializedTag(AbstractTagCreator creator, Tag tag, List fields, int size) {
+		this.creator = creator;
+		this.tag = tag;
+		this.fields = fields;
+		this.size = size;
+	}
+
+	/**
+	 * Returns the size of the tag, without padding.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the tag in the format of the creator, which is the serialized
+	 * tag itself if it was already in that format.
+	 */
+	public Tag getTag() {
+		return tag;
+	}
+
+	/**
+	 * Puts the tag followed by the given padding in the buffer, at its
+	 * position.
+	 * 
+	 * @param buf
+	 *            The buffer, with at least getSize() + padding bytes remaining
+	 * @param padding
+	 *            The number of padding bytes
+	 */
+	public void writeTo(ByteBuffer buf, int padding)
+			throws UnsupportedEncodingException {
+		creator.create(tag, buf, fields, size, padding);
+	}
+
+	/**
+	 * Returns the tag followed by the given padding in a buffer positioned at
+	 * 0, with the size of the tag and the padding as limit.
+	 * 
+	 * @param padding
+	 *            The number of padding bytes
+	 * @param pool
+	 *            The pool providing the buffer, valid until its next use by
+	 *            the calling thread, or <code>null</code> for a new buffer.
+	 */
+	public ByteBuffer toByteBuffer(int padding, ByteBufferPool pool)
+			throws UnsupportedEncodingException {
+		ByteBuffer buf = pool == null ? ByteBuffer.allocate(size + padding)
+				: pool.get(size + padding);
+		writeTo(buf, padding);
+		buf.rewind();
+		return buf;
+	}
+}
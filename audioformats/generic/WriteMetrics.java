@@ -0,0 +1,97 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.generic;
+
+/**
+ * Counts the tag writes done by the writers, separating the ones written in
+ * place in the original file from the ones which copied the whole file to a
+ * temporary one. A high proportion of rewrites means the padding left after
+ * the tags is too small, see {@link PaddingPolicy}.<br>
+ * The counters can be updated and read from several threads.
+ */
+public class WriteMetrics {
+
+	private long inPlaceWrites;
+
+	private long rewrites;
+
+	private long rewrittenBytes;
+
+	/**
+	 * Counts a write done in the original file.
+	 */
+	public synchronized void addInPlaceWrite() {
+		inPlaceWrites++;
+	}
+
+	/**
+	 * Counts a write which copied the file.
+	 * 
+	 * @param bytes
+	 *            The size of the copy
+	 */
+	public synchronized void addRewrite(long bytes) {
+		rewrites++;
+		rewrittenBytes += bytes;
+	}
+
+	/**
+	 * Returns the number of writes done in the original file.
+	 */
+	public synchronized long getInPlaceWrites() {
+		return inPlaceWrites;
+	}
+
+	/**
+	 * Returns the number of writes which copied the whole file.
+	 */
+	public synchronized long getRewrites() {
+		return rewrites;
+	}
+
+	/**
+	 * Returns the number of bytes written by the copies.
+	 */
+	public synchronized long getRewrittenBytes() {
+		return rewrittenBytes;
+	}
+
+	/**
+	 * Returns the proportion of the writes which copied the file, between 0
+	 * and 1, 0 if there was no write.
+	 */
+	public synchronized double getRewriteRatio() {
+		long writes = inPlaceWrites + rewrites;
+		return writes == 0 ? 0 : (double) rewrites / writes;
+	}
+
+	/**
+	 * Sets all the counters back to 0.
+	 */
+	public synchronized void reset() {
+		inPlaceWrites = 0;
+		rewrites = 0;
+		rewrittenBytes = 0;
+	}
+
+	public synchronized String toString() {
+		return "WriteMetrics[inPlace=" + inPlaceWrites + ", rewrites="
+				+ rewrites + ", rewrittenBytes=" + rewrittenBytes + "]";
+	}
+}
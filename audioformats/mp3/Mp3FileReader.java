@@ -21,10 +21,12 @@ package entagged.audioformats.mp3;
 
 import java.io.*;
 
+import entagged.audioformats.AudioFile;
 import entagged.audioformats.EncodingInfo;
 import entagged.audioformats.Tag;
 import entagged.audioformats.exceptions.CannotReadException;
 import entagged.audioformats.generic.AudioFileReader;
+import entagged.audioformats.generic.FileReadWindow;
 import entagged.audioformats.generic.GenericTag;
 import entagged.audioformats.mp3.util.Id3v1TagReader;
 import entagged.audioformats.mp3.util.Id3v2TagReader;
@@ -36,29 +38,51 @@ public class Mp3FileReader extends AudioFileReader {
 	private Id3v2TagReader idv2tr = new Id3v2TagReader();
 	private Id3v1TagReader idv1tr = new Id3v1TagReader();
 	
-	protected EncodingInfo getEncodingInfo( RandomAccessFile raf )  throws CannotReadException, IOException {
+	protected EncodingInfo getEncodingInfo( FileReadWindow raf )  throws CannotReadException, IOException {
 		return ir.read(raf);
 	}
 	
-	protected Tag getTag( RandomAccessFile raf )  throws IOException {
-		String error = "";
-		Id3v2Tag v2 = null;
-		Id3v1Tag v1 = null;
+	protected Tag getTag( FileReadWindow raf )  throws IOException {
+		Id3v2Tag v2 = readId3v2(raf, 0);
+		Id3v1Tag v1 = readId3v1(raf);
+
+		return merge(v2, v1);
+	}
+	
+	/*
+	 * Reads the file in the order of its content: the ID3v2 tag at the beginning,
+	 * the first MPEG frame right after it, and the ID3v1 tag at the end, so the
+	 * file is only walked through once. The search of the first frame is
+	 * skipped when only the tag is requested.
+	 */
+	protected AudioFile readAudioFile( File f, FileReadWindow raf, int options )  throws CannotReadException, IOException {
+		boolean readTag = (options & READ_TAG) != 0;
 		
+		Id3v2Tag v2 = readTag ? readId3v2(raf, options) : null;
+		EncodingInfo info = (options & READ_INFO) != 0 ? ir.read(raf, options) : null;
+		Tag tag = readTag ? merge(v2, readId3v1(raf)) : null;
+		
+		return createAudioFile(f, info, tag, options);
+	}
+	
+	private Id3v2Tag readId3v2( FileReadWindow raf, int options )  throws IOException {
 		try {
-			v2 = idv2tr.read(raf);
+			raf.seek(0);
+			return idv2tr.read(raf, options);
 		} catch(CannotReadException e) {
-			v2 = null;
-			error += "("+e.getMessage()+")";
+			return null;
 		}
-		
+	}
+	
+	private Id3v1Tag readId3v1( FileReadWindow raf )  throws IOException {
 		try {
-			v1 = idv1tr.read(raf);
+			return idv1tr.read(raf);
 		} catch(CannotReadException e) {
-			v1 = null;
-			error += "("+e.getMessage()+")";
+			return null;
 		}
-
+	}
+	
+	private Tag merge( Id3v2Tag v2, Id3v1Tag v1 ) {
 		if(v1 == null && v2 == null)
 			return new GenericTag();
             
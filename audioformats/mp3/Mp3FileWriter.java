@@ -21,6 +21,7 @@ package entagged.audioformats.mp3;
 import entagged.audioformats.*;
 import entagged.audioformats.exceptions.*;
 import entagged.audioformats.generic.AudioFileWriter;
+import entagged.audioformats.generic.SerializedTag;
 import entagged.audioformats.mp3.util.*;
 
 import java.io.*;
@@ -30,9 +31,29 @@ public class Mp3FileWriter extends AudioFileWriter {
 	private Id3v1TagWriter idv1tw = new Id3v1TagWriter();
 	private Id3v2TagWriter idv2tw = new Id3v2TagWriter();
 	
+	protected SerializedTag serializeTag(Tag tag) throws CannotWriteException, IOException {
+		return idv2tw.serialize(tag);
+	}
+	
 	protected void writeTag(Tag tag, RandomAccessFile raf, RandomAccessFile rafTemp) throws CannotWriteException, IOException {
+		writeTag(tag, idv2tw.serialize(tag), raf, rafTemp);
+	}
+	
+	protected void writeTag(Tag tag, SerializedTag serialized, RandomAccessFile raf, RandomAccessFile rafTemp) throws CannotWriteException, IOException {
 	    idv1tw.write(tag, raf);
-		idv2tw.write(tag, raf, rafTemp);
+		idv2tw.write(serialized, raf, rafTemp, getPaddingPolicy());
+	}
+	
+	/*
+	 * The ID3v2 tag is rewritten in place when it fits in the old one and its
+	 * padding, the ID3v1 tag always is.
+	 */
+	protected boolean writeTagInPlace(Tag tag, SerializedTag serialized, RandomAccessFile raf) throws CannotWriteException, IOException {
+		if (!idv2tw.writeInPlace(serialized, raf))
+			return false;
+		
+		idv1tw.write(tag, raf);
+		return true;
 	}
 	
 	protected void deleteTag(RandomAccessFile raf, RandomAccessFile rafTemp) throws IOException {
@@ -0,0 +1,162 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.mp3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import entagged.audioformats.exceptions.CannotReadException;
+import entagged.audioformats.generic.FileReadWindow;
+import entagged.audioformats.mp3.util.Mp3SeekTableReader;
+
+/**
+ * <p>
+ * Gives the position in an MP3 file of the audio at a given time, to start
+ * playing or streaming a file from there without decoding it.
+ * </p>
+ * <p>
+ * The table is built from the table of contents of the Xing or VBRI header
+ * when the file has one, or else by walking the frames of the file once. It
+ * only holds a list of offsets taken at a fixed time interval, which can be
+ * obtained with {@link #getOffsets()} and {@link #getInterval()} to be
+ * stored, and given back to the constructor to rebuild the table without
+ * reading the file again.
+ * </p>
+ * <p>
+ * <code>
+ *		Mp3SeekTable table = Mp3SeekTable.read(new File("/music/song.mp3"));<br/>
+ *		long offset = table.getOffset(93.5); //Position of the audio at 1:33.5
+ *	</code>
+ * </p>
+ */
+public class Mp3SeekTable {
+
+	private final static Mp3SeekTableReader reader = new Mp3SeekTableReader();
+
+	/**
+	 * <code>true</code> if the offsets are positions of frame headers.
+	 */
+	private final boolean frameAligned;
+
+	/**
+	 * The time between two offsets, in seconds.
+	 */
+	private final double interval;
+
+	/**
+	 * The offsets, offset <code>i</code> is the position of the audio at
+	 * <code>i * interval</code> seconds.
+	 */
+	private final long[] offsets;
+
+	/**
+	 * Creates a table from its offsets.
+	 * 
+	 * @param interval
+	 *            The time between two offsets, in seconds.
+	 * @param offsets
+	 *            The offsets, at least one.
+	 * @param frameAligned
+	 *            <code>true</code> if the offsets are positions of frame
+	 *            headers, otherwise the positions between two offsets are
+	 *            interpolated.
+	 */
+	public Mp3SeekTable(double interval, long[] offsets, boolean frameAligned) {
+		if (offsets.length == 0 || interval <= 0)
+			throw new IllegalArgumentException("Empty seek table");
+		this.interval = interval;
+		this.offsets = offsets;
+		this.frameAligned = frameAligned;
+	}
+
+	/**
+	 * Builds the table of the given file.
+	 * 
+	 * @param f
+	 *            The MP3 file.
+	 * @return The table.
+	 * @throws CannotReadException
+	 *             If no MPEG frame could be found, or the file could not be
+	 *             read.
+	 */
+	public static Mp3SeekTable read(File f) throws CannotReadException {
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(f, "r");
+			return reader.read(new FileReadWindow(f, raf));
+		} catch (IOException e) {
+			throw new CannotReadException("\"" + f + "\" :" + e, e);
+		} finally {
+			try {
+				if (raf != null)
+					raf.close();
+			} catch (IOException ex) {
+				System.err.println("\"" + f + "\" :" + ex);
+			}
+		}
+	}
+
+	/**
+	 * @return The time between two offsets, in seconds.
+	 */
+	public double getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Returns the position in the file of the audio at the given time. If the
+	 * table is frame aligned, this is the header of the frame at most
+	 * {@link #getInterval()} seconds before.
+	 * 
+	 * @param seconds
+	 *            The time from the beginning of the audio.
+	 * @return The offset in the file.
+	 */
+	public long getOffset(double seconds) {
+		if (seconds <= 0)
+			return offsets[0];
+
+		double position = seconds / interval;
+		int i = (int) position;
+		if (i >= offsets.length - 1)
+			return offsets[offsets.length - 1];
+		if (frameAligned)
+			return offsets[i];
+
+		return offsets[i] + (long) ((offsets[i + 1] - offsets[i]) * (position - i));
+	}
+
+	/**
+	 * Returns the offsets of the table, this array must not be modified.
+	 * 
+	 * @return The offsets, offset <code>i</code> is the position of the audio
+	 *         at <code>i * getInterval()</code> seconds.
+	 */
+	public long[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * @return <code>true</code> if the offsets are positions of frame headers.
+	 */
+	public boolean isFrameAligned() {
+		return frameAligned;
+	}
+}
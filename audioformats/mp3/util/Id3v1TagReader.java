@@ -19,13 +19,14 @@
 package entagged.audioformats.mp3.util;
 
 import entagged.audioformats.exceptions.*;
+import entagged.audioformats.generic.FileReadWindow;
 import entagged.audioformats.mp3.*;
 
 import java.io.*;
 
 public class Id3v1TagReader {
 
-	public Id3v1Tag read( RandomAccessFile raf ) throws CannotReadException, IOException {
+	public Id3v1Tag read( FileReadWindow raf ) throws CannotReadException, IOException {
 		Id3v1Tag tag = new Id3v1Tag();
 		//Check wether the file contains an Id3v1 tag--------------------------------
 		raf.seek( raf.length() - 128 );
@@ -76,7 +77,7 @@ public class Id3v1TagReader {
 		return tag;
 	}
 	
-	private String read(RandomAccessFile raf, int length) throws IOException {
+	private String read(FileReadWindow raf, int length) throws IOException {
 		byte[] b = new byte[length];
 		raf.read( b );
 		String ret = new String( b ).trim();
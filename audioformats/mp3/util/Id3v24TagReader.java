@@ -20,7 +20,7 @@ package entagged.audioformats.mp3.util;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
-import java.util.Hashtable;
+import java.util.HashMap;
 
 import entagged.audioformats.mp3.Id3v2Tag;
 import entagged.audioformats.mp3.util.id3frames.ApicId3Frame;
@@ -42,8 +42,9 @@ public class Id3v24TagReader {
 	/**
 	 * This field maps the field names of the version 2 frames to the one of
 	 * version 3.<br>
+	 * It is only read once filled, so the reader can be shared by threads.
 	 */
-	private Hashtable conversion22to23;
+	private final HashMap conversion22to23 = new HashMap(100);
 
 	/**
 	 * Creates an instance.
@@ -53,6 +54,16 @@ public class Id3v24TagReader {
 		initConversionTable();
 	}
 
+	/**
+	 * Returns the frame id to use for the given frame name, version 2 names
+	 * are converted to the version 3 ones.
+	 */
+	private String convertId(String field, byte version) {
+		if (version == Id3v2Tag.ID3V22)
+			return convertFromId3v22(field);
+		return field;
+	}
+
 	private String convertFromId3v22(String field) {
 		String s = (String) this.conversion22to23.get(field);
 
@@ -62,11 +73,22 @@ public class Id3v24TagReader {
 		return s;
 	}
 
-	private Id3Frame createId3Frame(String field, byte[] data, byte version)
+	/**
+	 * Creates the frame of the given id upon its content.
+	 * 
+	 * @param field
+	 *            The frame id, version 2 names must have been converted.
+	 * @param data
+	 *            The frame content.
+	 * @param version
+	 *            The ID3V2 version of the content.
+	 * @return The frame.
+	 * @throws UnsupportedEncodingException
+	 *             Thrown on charset conversions, if system does not support
+	 *             them.
+	 */
+	Id3Frame createId3Frame(String field, byte[] data, byte version)
 			throws UnsupportedEncodingException {
-		if (version == Id3v2Tag.ID3V22)
-			field = convertFromId3v22(field);
-
 		// Text frames
 		if (field.startsWith("T") && !field.startsWith("TX")) {
 			if (field.equalsIgnoreCase("TDRC")) {
@@ -97,7 +119,6 @@ public class Id3v24TagReader {
 		// TODO: LINK frame (2.3) has a frame ID of 3-bytes making it
 		// incompatible with 2.3 frame ID of 4bytes, WTF???
 
-		this.conversion22to23 = new Hashtable(100);
 		String[] v22 = { "BUF", "CNT", "COM", "CRA", "CRM", "ETC", "EQU",
 				"GEO", "IPL", "LNK", "MCI", "MLL", "PIC", "POP", "REV", "RVA",
 				"SLT", "STC", "TAL", "TBP", "TCM", "TCO", "TCR", "TDA", "TDY",
@@ -164,11 +185,39 @@ public class Id3v24TagReader {
 	 */
 	public Id3v2Tag read(ByteBuffer data, boolean[] ID3Flags, byte version)
 			throws UnsupportedEncodingException {
+		return read(data, ID3Flags, version, false);
+	}
+
+	/**
+	 * This method reads an ID3V2 tag from the given {@link ByteBuffer} at its
+	 * curren pointer location.<br>
+	 * In lazy mode, the frames are not decoded now, but on the first access to
+	 * them through the returned tag, which keeps <code>data</code> for that
+	 * purpose.
+	 * 
+	 * @param data
+	 *            ID3V2 tag.
+	 * @param ID3Flags
+	 *            The flags of the tag header.
+	 * @param version
+	 *            Version Flag. (used to handle some version specific
+	 *            implementations).
+	 * @param lazy
+	 *            <code>true</code> if the frames should be decoded on demand.
+	 * @return An ID3V2 tag representation.
+	 * @throws UnsupportedEncodingException
+	 *             Thrown on charset conversions, if system does not support
+	 *             them.
+	 */
+	public Id3v2Tag read(ByteBuffer data, boolean[] ID3Flags, byte version,
+			boolean lazy) throws UnsupportedEncodingException {
 		// get the tagsize from the buffers size.
 		int tagSize = data.limit();
 		byte[] b;
 		// Create a result object
-		Id3v2Tag tag = new Id3v2Tag();
+		LazyId3v2Tag lazyTag = lazy ? new LazyId3v2Tag(data, version, this)
+				: null;
+		Id3v2Tag tag = lazy ? lazyTag : new Id3v2Tag();
 		// ---------------------------------------------------------------------
 		// If the flags indicate an extended header to be present, read its
 		// size and skip it. (It does not contain any useful information, maybe
@@ -214,9 +263,19 @@ public class Id3v24TagReader {
 				break;
 			}
 
-			b = new byte[frameSize
+			int contentSize = frameSize
 					+ ((version == Id3v2Tag.ID3V23 || version == Id3v2Tag.ID3V24) ? 2
-							: 0)];
+							: 0);
+			if (lazy && contentSize <= data.remaining()) {
+				// Only record where the frame is, and skip it
+				if (!"".equals(field))
+					lazyTag.addUndecoded(convertId(field, version), data
+							.position(), contentSize);
+				data.position(data.position() + contentSize);
+				continue;
+			}
+
+			b = new byte[contentSize];
 			// Read the complete frame into the byte array.
 			data.get(b);
 
@@ -230,7 +289,7 @@ public class Id3v24TagReader {
 				 */
 				try {
 					// Create the Frame upon the byte array data.
-					f = createId3Frame(field, b, version);
+					f = createId3Frame(convertId(field, version), b, version);
 				} catch (UnsupportedEncodingException uee) {
 					throw uee;
 				} catch (Exception e) {
@@ -29,7 +29,8 @@ import entagged.audioformats.mp3.Id3v2Tag;
 public class Id3v2TagCreator extends AbstractTagCreator {
 	/**
 	 * Default Padding size, when the tag is created from scratch (the old
-	 * cannot be replaced)
+	 * cannot be replaced). The writers now choose the padding with a
+	 * PaddingPolicy, whose default gives this size.
 	 */
 	public final static int DEFAULT_PADDING = 4000;
 
@@ -19,13 +19,18 @@
 package entagged.audioformats.mp3.util;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
 
 import entagged.audioformats.exceptions.CannotReadException;
+import entagged.audioformats.generic.AudioFileReader;
+import entagged.audioformats.generic.FileReadWindow;
+import entagged.audioformats.generic.FileRegion;
 import entagged.audioformats.mp3.Id3v2Tag;
+import entagged.audioformats.mp3.util.id3frames.ApicId3Frame;
 
 /**
  * This class is more a dispatching unit for selecting the right reader based on
@@ -36,16 +41,10 @@ import entagged.audioformats.mp3.Id3v2Tag;
 public class Id3v2TagReader {
 
 	/**
-	 * The current flags of the ID3V2 tag header.<br>
-	 * By apperance:<br>
-	 * <ol>
-	 * <li> Unsynchronisation </li>
-	 * <li> Extended Header present </li>
-	 * <li> Experimental Indicator </li>
-	 * <li> Footer Present </li>
-	 * </ol>
+	 * Number of bytes read at the beginning of a picture frame left in the
+	 * file, to get the mime type and the description.
 	 */
-	private boolean[] ID3Flags;
+	private final static int PICTURE_HEADER_SIZE = 1024;
 
 	/**
 	 * This field stores the class which performs the reversion of the
@@ -108,10 +107,8 @@ public class Id3v2TagReader {
 	 * found and there is a reader for that version, a ID3V2 tag will be created
 	 * upon the contents.<br>
 	 * <b>Hint for developers:</b><br>
-	 * Since {@link #ID3Flags} is an instance variable of the reader and the
-	 * array is passed without copying, this method must remain
-	 * &quot;synchronized&quot; so no two threads would change this field of the
-	 * current reader instance.
+	 * The reader is shared by all threads, every state about the current tag
+	 * (like the header flags) must be kept in local variables.
 	 * 
 	 * @param raf
 	 *            The mp3 file containing the ID3V2 Tag.
@@ -121,8 +118,34 @@ public class Id3v2TagReader {
 	 * @throws IOException
 	 *             On I/O errors.
 	 */
-	public synchronized Id3v2Tag read(RandomAccessFile raf)
+	public Id3v2Tag read(FileReadWindow raf)
 			throws CannotReadException, IOException {
+		return read(raf, 0);
+	}
+
+	/**
+	 * Same as above, with read options.<br>
+	 * With {@link AudioFileReader#LAZY_FIELDS}, the frames are decoded when
+	 * they are first accessed instead of now.<br>
+	 * With {@link AudioFileReader#LAZY_PICTURES}, the data of the picture
+	 * frames is not read but referenced by a {@link FileRegion}, if the tag is
+	 * not unsynchronised and the window knows its file.
+	 * 
+	 * @param raf
+	 *            The mp3 file containing the ID3V2 Tag.
+	 * @param options
+	 *            The read options.
+	 * @return an ID3V2 tag representation.
+	 * @throws CannotReadException
+	 *             If the file doesn't contain <b>valid</b> ID3V2 tag data.
+	 * @throws IOException
+	 *             On I/O errors.
+	 * @see Id3v24TagReader#read(ByteBuffer, boolean[], byte, boolean)
+	 */
+	public Id3v2Tag read(FileReadWindow raf, int options)
+			throws CannotReadException, IOException {
+		boolean lazy = (options & AudioFileReader.LAZY_FIELDS) != 0;
+
 		// Create the Result object
 		Id3v2Tag tag = null;
 
@@ -146,17 +169,36 @@ public class Id3v2TagReader {
 		String versionID3 = versionHigh + "." + raf.read();
 
 		// parsing the ID3V2 tag header flags.
-		ID3Flags = processID3Flags(raf.readByte());
+		// By apperance:
+		// Unsynchronisation, Extended Header present, Experimental Indicator,
+		// Footer Present
+		boolean[] ID3Flags = processID3Flags(raf.readByte());
 		// ---------------------------------------------------------------------
 		// Read the tagsize from header, which is a sync safe integer
 		int tagSize = readSyncsafeInteger(raf);
 
 		// ---------------------------------------------------------------------
 		// Fill a byte buffer, then process according to correct version
-		b = new byte[tagSize + 2];
+		ByteBuffer bb = null;
+		List pictures = new ArrayList();
+		if ((options & AudioFileReader.LAZY_PICTURES) != 0
+				&& ID3Flags[0] == false && raf.getFile() != null) {
+			if (versionHigh.equals("2"))
+				bb = readWithoutPictures(raf, tagSize + 2, ID3Flags,
+						Id3v2Tag.ID3V22, pictures);
+			else if (versionHigh.equals("3"))
+				bb = readWithoutPictures(raf, tagSize + 2, ID3Flags,
+						Id3v2Tag.ID3V23, pictures);
+			else if (versionHigh.equals("4"))
+				bb = readWithoutPictures(raf, tagSize + 2, ID3Flags,
+						Id3v2Tag.ID3V24, pictures);
+		}
+		if (bb == null) {
+			b = new byte[tagSize + 2];
 //		ByteBuffer bb = ByteBuffer.allocateDirect(tagSize+2);
-		raf.readFully(b);
-		ByteBuffer bb = ByteBuffer.wrap(b);
+			raf.readFully(b);
+			bb = ByteBuffer.wrap(b);
+		}
 //		bb.put(b);
 //		bb.position(0);
 //		raf.readFully(b);
@@ -174,11 +216,11 @@ public class Id3v2TagReader {
 
 		// Up to now we use the same reader for all versions and pass a flag
 		if (versionHigh.equals("2")) {
-			tag = tagReader.read(bb, ID3Flags, Id3v2Tag.ID3V22);
+			tag = tagReader.read(bb, ID3Flags, Id3v2Tag.ID3V22, lazy);
 		} else if (versionHigh.equals("3")) {
-			tag = tagReader.read(bb, ID3Flags, Id3v2Tag.ID3V23);
+			tag = tagReader.read(bb, ID3Flags, Id3v2Tag.ID3V23, lazy);
 		} else if (versionHigh.equals("4")) {
-			tag = tagReader.read(bb, ID3Flags, Id3v2Tag.ID3V24);
+			tag = tagReader.read(bb, ID3Flags, Id3v2Tag.ID3V24, lazy);
 		} else {
 			/*
 			 * The implementation of entagges ID3V2 tag parsing does not ignore
@@ -187,9 +229,179 @@ public class Id3v2TagReader {
 			throw new CannotReadException("ID3v2 tag version " + versionID3
 					+ " not supported !");
 		}
+
+		// The pictures left in the file come after the other frames
+		for (int i = 0; i < pictures.size(); i++)
+			tag.add((ApicId3Frame) pictures.get(i));
 		return tag;
 	}
 
+	/**
+	 * Reads the tag data (after the header) without the data of the picture
+	 * frames.<br>
+	 * The frame headers are walked through in the file, like
+	 * {@link Id3v24TagReader} would do in the tag data. All the bytes are
+	 * copied into the returned buffer, except the picture frames, which are
+	 * created with their picture data referenced by a {@link FileRegion}. Where
+	 * the walk stops, the rest of the tag is copied as is, so the returned
+	 * data reads the same as the complete one.
+	 * 
+	 * @param raf
+	 *            The mp3 file, pointing after the tag header.
+	 * @param length
+	 *            The length of the tag data.
+	 * @param ID3Flags
+	 *            The flags of the tag header.
+	 * @param version
+	 *            The ID3V2 version of the tag.
+	 * @param pictures
+	 *            The list receiving the picture frames.
+	 * @return The tag data without the picture frames, or <code>null</code>
+	 *         if the extended header is invalid (then nothing has been read).
+	 * @throws IOException
+	 *             On I/O errors.
+	 */
+	private ByteBuffer readWithoutPictures(FileReadWindow raf, int length,
+			boolean[] ID3Flags, byte version, List pictures)
+			throws IOException {
+		long start = raf.getFilePointer();
+		int specSize = (version == Id3v2Tag.ID3V22) ? 3 : 4;
+		int sizeSize = (version == Id3v2Tag.ID3V22) ? 3 : 4;
+		int flagsSize = (version == Id3v2Tag.ID3V22) ? 0 : 2;
+		String pictureId = (version == Id3v2Tag.ID3V22) ? "PIC" : "APIC";
+
+		// Parts of the tag to copy, as {offset, length} relative to start
+		List copied = new ArrayList();
+		int copiedLength = 0;
+		int pos = 0;
+
+		if (version != Id3v2Tag.ID3V22 && ID3Flags[1]) {
+			// The extended header is copied, as skipped by Id3v24TagReader
+			byte[] ext = new byte[8];
+			raf.readFully(ext);
+			int extSize = readSize(ext, 4, version);
+			if (extSize < 0 || 8 + (long) extSize > length) {
+				raf.seek(start);
+				return null;
+			}
+			pos = 8 + extSize;
+		}
+
+		byte[] header = new byte[specSize + sizeSize];
+		while (length - pos > specSize + sizeSize) {
+			raf.seek(start + pos);
+			raf.readFully(header);
+			if (header[0] == 0)
+				break;
+
+			int frameSize = readSize(header, specSize, version);
+			int remaining = length - pos - specSize - sizeSize;
+			if (frameSize > remaining || frameSize <= 0
+					|| frameSize + flagsSize > remaining)
+				break;
+
+			int contentSize = frameSize + flagsSize;
+			int frameLength = specSize + sizeSize + contentSize;
+			ApicId3Frame picture = null;
+			if (contentSize > PICTURE_HEADER_SIZE
+					&& new String(header, 0, specSize).equals(pictureId))
+				picture = createPicture(raf, raf.getFilePointer(),
+						contentSize, version);
+
+			if (picture != null) {
+				pictures.add(picture);
+				if (pos > copiedLength)
+					copied.add(new int[] { copiedLength, pos - copiedLength });
+				copiedLength = pos + frameLength;
+			}
+			pos += frameLength;
+		}
+		if (length > copiedLength)
+			copied.add(new int[] { copiedLength, length - copiedLength });
+
+		// Now read the parts to keep in one buffer
+		int total = 0;
+		for (int i = 0; i < copied.size(); i++)
+			total += ((int[]) copied.get(i))[1];
+		byte[] b = new byte[total];
+		int offset = 0;
+		for (int i = 0; i < copied.size(); i++) {
+			int[] part = (int[]) copied.get(i);
+			raf.seek(start + part[0]);
+			raf.readFully(b, offset, part[1]);
+			offset += part[1];
+		}
+		raf.seek(start + length);
+		return ByteBuffer.wrap(b);
+	}
+
+	/**
+	 * Creates a picture frame without reading its picture data.<br>
+	 * 
+	 * @param raf
+	 *            The mp3 file.
+	 * @param contentOffset
+	 *            The offset of the frame content in the file.
+	 * @param contentSize
+	 *            The length of the frame content.
+	 * @param version
+	 *            The ID3V2 version of the tag.
+	 * @return The frame, or <code>null</code> if the beginning of the picture
+	 *         data could not be found, the frame is then read with the tag.
+	 * @throws IOException
+	 *             On I/O errors.
+	 */
+	private ApicId3Frame createPicture(FileReadWindow raf,
+			long contentOffset, int contentSize, byte version)
+			throws IOException {
+		byte[] rawHeader = new byte[PICTURE_HEADER_SIZE];
+		raf.seek(contentOffset);
+		raf.readFully(rawHeader);
+		try {
+			// The picture data found in the header gives its position
+			ApicId3Frame frame = new ApicId3Frame(rawHeader, version);
+			if (frame.getMimeType() == null
+					|| frame.getMimeType().trim().equals("-->"))
+				return null;
+			int dataOffset = rawHeader.length - frame.getData().length;
+			if (dataOffset <= 0 || dataOffset >= rawHeader.length)
+				return null;
+			return new ApicId3Frame(rawHeader, new FileRegion(raf.getFile(),
+					contentOffset + dataOffset, contentSize - dataOffset),
+					version);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a frame or extended header size as {@link Id3v24TagReader} does.
+	 * 
+	 * @param b
+	 *            The bytes containing the size.
+	 * @param offset
+	 *            The offset of the size.
+	 * @param version
+	 *            The ID3V2 version of the tag.
+	 * @return The size.
+	 */
+	private int readSize(byte[] b, int offset, byte version) {
+		int value = 0;
+		if (version == Id3v2Tag.ID3V24) {
+			value += (b[offset] & 0xFF) << 21;
+			value += (b[offset + 1] & 0xFF) << 14;
+			value += (b[offset + 2] & 0xFF) << 7;
+			value += b[offset + 3] & 0xFF;
+		} else {
+			if (version == Id3v2Tag.ID3V23)
+				value += (b[offset++] & 0xFF) << 24;
+			value += (b[offset] & 0xFF) << 16;
+			value += (b[offset + 1] & 0xFF) << 8;
+			value += (b[offset + 2] & 0xFF);
+		}
+		return value;
+	}
+
 	/**
 	 * Take the first four bytes from the provided MBB and convert them into an
 	 * int, by treating them as a sync. safe integer.
@@ -200,7 +412,7 @@ public class Id3v2TagReader {
 	 * @exception IOException
 	 *                IO Error
 	 */
-	private int readSyncsafeInteger(RandomAccessFile raf) throws IOException {
+	private int readSyncsafeInteger(FileReadWindow raf) throws IOException {
 		int value = 0;
 
 		value += (raf.read() & 0xFF) << 21;
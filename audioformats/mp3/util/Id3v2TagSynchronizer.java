@@ -22,10 +22,56 @@ import java.nio.ByteBuffer;
 
 public class Id3v2TagSynchronizer {
 
+	/*
+	 * Removes the 0x00 bytes inserted after each 0xFF by the unsynchronisation
+	 * scheme, from the position to the limit of the buffer. The returned buffer
+	 * starts at position 0.
+	 * When the buffer is backed by a writable array, the bytes are compacted in
+	 * place: the array is scanned for the 0xFF 0x00 pairs and the runs between
+	 * them are moved with System.arraycopy, so no second buffer is allocated and
+	 * the content of the given buffer is overwritten.
+	 */
     public ByteBuffer synchronize(ByteBuffer b) {
-        ByteBuffer bb = ByteBuffer.allocate(b.capacity());
+    	if (!b.hasArray() || b.isReadOnly())
+    		return synchronizeCopy(b);
+    	
+    	byte[] a = b.array();
+    	int start = b.arrayOffset() + b.position();
+    	int end = b.arrayOffset() + b.limit();
+    	
+    	int read = start;
+    	int write = start;
+    	while (read < end) {
+    		int ff = indexOfPair(a, read, end);
+    		//Keep everything up to and including the 0xFF, drop the 0x00
+    		int len = (ff == -1) ? end - read : ff + 1 - read;
+    		if (write != read)
+    			System.arraycopy(a, read, a, write, len);
+    		write += len;
+    		read += (ff == -1) ? len : len + 1;
+    	}
+    	
+    	return ByteBuffer.wrap(a, start, write - start).slice();
+    }
+    
+    /*
+     * Returns the index of the first 0xFF followed by a 0x00 in a[from..end[,
+     * or -1.
+     */
+    private int indexOfPair(byte[] a, int from, int end) {
+    	for (int i = from; i < end - 1; i++) {
+    		if (a[i] == (byte) 0xFF && a[i + 1] == 0x00)
+    			return i;
+    	}
+    	return -1;
+    }
+    
+    /*
+     * Same as synchronize, for the buffers that cannot be modified in place.
+     */
+    private ByteBuffer synchronizeCopy(ByteBuffer b) {
+        ByteBuffer bb = ByteBuffer.allocate(b.remaining());
         
-        int cap = b.capacity();
         while(b.remaining() >= 1) {
         	byte cur = b.get();
             bb.put(cur);
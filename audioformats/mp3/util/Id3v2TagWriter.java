@@ -20,6 +20,9 @@ package entagged.audioformats.mp3.util;
 
 import entagged.audioformats.*;
 import entagged.audioformats.exceptions.*;
+import entagged.audioformats.generic.ByteBufferPool;
+import entagged.audioformats.generic.PaddingPolicy;
+import entagged.audioformats.generic.SerializedTag;
 
 import java.io.*;
 import java.nio.*;
@@ -34,6 +37,10 @@ import java.nio.channels.*;
 public class Id3v2TagWriter {
 	private Id3v2TagCreator tc = new Id3v2TagCreator();
 
+	private MPEGFrameScanner scanner = new MPEGFrameScanner();
+
+	private ByteBufferPool pool = new ByteBufferPool();
+
 	public RandomAccessFile delete(RandomAccessFile raf,
 			RandomAccessFile tempRaf) throws IOException {
 		FileChannel fc = raf.getChannel();
@@ -60,22 +67,12 @@ public class Id3v2TagWriter {
 
 		// Here we will try to skip eventual trash afer the tag and before the
 		// audio data
-		b = ByteBuffer.allocate(4);
-		int skip = 0;
-		while (fc.read(b) != -1) {
-			if ((b.get(0) & 0xFF) == 0xFF && (b.get(1) & 0xE0) == 0xE0
-					&& (b.get(1) & 0x06) != 0 && (b.get(2) & 0xF0) != 0xF0
-					&& (b.get(2) & 0x08) != 0x08) {
-				fc.position(fc.position() - 4);
-				break;
-			}
-
-			fc.position(fc.position() - 3);
-			b.rewind();
-			skip++;
-		}
+		long audioStart = scanner.find(fc, tagSize + 10);
+		if (audioStart == -1)
+			audioStart = tagSize + 10;
+		fc.position(audioStart);
 
-		tempFC.transferFrom(fc, 0, fc.size() - tagSize - 10 - skip);
+		tempFC.transferFrom(fc, 0, fc.size() - audioStart);
 		return tempRaf;
 	}
 
@@ -110,43 +107,114 @@ public class Id3v2TagWriter {
 		return true;
 	}
 
-	public void write(Tag tag, RandomAccessFile raf, RandomAccessFile tempRaf)
-			throws CannotWriteException, IOException {
+	/**
+	 * Returns the size of the ID3v2 tag of the file, header included, or 0 if
+	 * the file has none.
+	 * 
+	 * @throws CannotWriteException
+	 *             if the tag is of a version which cannot be overwritten.
+	 */
+	private int getTagSize(RandomAccessFile raf) throws CannotWriteException,
+			IOException {
 		FileChannel fc = raf.getChannel();
+		if (!tagExists(fc))
+			return 0;
 
-		int oldTagSize = 0;
+		// read the length
+		if (!canOverwrite(raf))
+			throw new CannotWriteException(
+					"Overwritting of this kind of ID3v2 tag not supported yet");
+		fc.position(6);
 
-		if (tagExists(fc)) {
-			// read the length
-			if (!canOverwrite(raf))
-				throw new CannotWriteException(
-						"Overwritting of this kind of ID3v2 tag not supported yet");
-			fc.position(6);
+		ByteBuffer buf = ByteBuffer.allocate(4);
+		fc.read(buf);
+		int tagSize = (buf.get(0) & 0xFF) << 21;
+		tagSize += (buf.get(1) & 0xFF) << 14;
+		tagSize += (buf.get(2) & 0xFF) << 7;
+		tagSize += buf.get(3) & 0xFF;
+		return tagSize + 10;
+	}
 
-			ByteBuffer buf = ByteBuffer.allocate(4);
-			fc.read(buf);
-			oldTagSize = (buf.get(0) & 0xFF) << 21;
-			oldTagSize += (buf.get(1) & 0xFF) << 14;
-			oldTagSize += (buf.get(2) & 0xFF) << 7;
-			oldTagSize += buf.get(3) & 0xFF;
-			oldTagSize += 10;
+	/**
+	 * Writes the tag over the existing one if it fits in the space of the old
+	 * tag and its padding, and forces it to the disk. Only the space of the
+	 * old tag is written, the audio data is never touched. An interrupted
+	 * write can however leave a tag mixing old and new content.
+	 * 
+	 * @return <code>false</code> if the file has no ID3v2 tag or if the new
+	 *         tag doesn't fit, in which case nothing has been written.
+	 */
+	public boolean writeInPlace(Tag tag, RandomAccessFile raf)
+			throws CannotWriteException, IOException {
+		return writeInPlace(tc.serialize(tag), raf);
+	}
 
-			// System.err.println("Old tag size: "+oldTagSize);
-			int newTagSize = tc.getTagLength(tag);
+	/**
+	 * Same as above, with a tag already serialized by {@link #serialize(Tag)}.
+	 */
+	public boolean writeInPlace(SerializedTag tag, RandomAccessFile raf)
+			throws CannotWriteException, IOException {
+		int oldTagSize = getTagSize(raf);
+		if (oldTagSize == 0 || oldTagSize < tag.getSize())
+			return false;
 
-			if (oldTagSize >= newTagSize) {
-				// replace
-				// System.err.println("Old ID32v Tag found, replacing the old
-				// tag");
-				fc.position(0);
+		overwrite(raf.getChannel(), tag.toByteBuffer(oldTagSize
+				- tag.getSize(), pool));
+		return true;
+	}
 
-				fc.write(tc.convert(tag, oldTagSize - newTagSize));
+	/**
+	 * Converts the tag to ID3v2 and encodes its fields, so that it can be
+	 * written by the methods taking a SerializedTag without being encoded
+	 * again.
+	 */
+	public SerializedTag serialize(Tag tag) throws IOException {
+		return tc.serialize(tag);
+	}
 
-				// ID3v2 Tag Written
+	/**
+	 * Writes the tag at the beginning of the file, over an old tag of the same
+	 * size, and forces it to the disk before returning.
+	 */
+	private void overwrite(FileChannel fc, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining())
+			fc.write(buf, buf.position());
+		fc.force(false);
+	}
 
-				return;
-			}
-		}
+	public void write(Tag tag, RandomAccessFile raf, RandomAccessFile tempRaf)
+			throws CannotWriteException, IOException {
+		write(tag, raf, tempRaf, PaddingPolicy.DEFAULT);
+	}
+
+	/**
+	 * Writes the tag in place if it fits, otherwise creates a new tag followed
+	 * by the padding chosen by the given policy, and the audio data.
+	 * 
+	 * @param policy
+	 *            Chooses the padding of the new tag
+	 */
+	public void write(Tag tag, RandomAccessFile raf, RandomAccessFile tempRaf,
+			PaddingPolicy policy) throws CannotWriteException, IOException {
+		SerializedTag serialized = tc.serialize(tag);
+		if (!writeInPlace(serialized, raf))
+			write(serialized, raf, tempRaf, policy);
+	}
+
+	/**
+	 * Creates a new tag, with a tag already serialized by
+	 * {@link #serialize(Tag)}, followed by the padding chosen by the given
+	 * policy and the audio data. The tag is not written in place, the caller
+	 * is expected to have tried {@link #writeInPlace(SerializedTag, RandomAccessFile)}
+	 * first.
+	 */
+	public void write(SerializedTag tag, RandomAccessFile raf,
+			RandomAccessFile tempRaf, PaddingPolicy policy)
+			throws CannotWriteException, IOException {
+		FileChannel fc = raf.getChannel();
+		int oldTagSize = getTagSize(raf);
+		ByteBuffer tagBuffer = tag.toByteBuffer(policy.getPadding(tag
+				.getSize(), fc.size() - oldTagSize), pool);
 
 		// create new tag with padding
 		// System.err.println("Creating a new ID3v2 Tag");
@@ -156,7 +224,7 @@ public class Id3v2TagWriter {
 			FileChannel tempFC = tempRaf.getChannel();
 
 			tempFC.position(0);
-			tempFC.write(tc.convert(tag, Id3v2TagCreator.DEFAULT_PADDING));
+			tempFC.write(tagBuffer);
 			tempFC.transferFrom(fc, tempFC.position(), fc.size() - oldTagSize);
 
 			fc.close();
@@ -166,7 +234,7 @@ public class Id3v2TagWriter {
 			content[1] = ByteBuffer.allocate((int) fc.size());
 			fc.read(content[1]);
 			content[1].rewind();
-			content[0] = tc.convert(tag, Id3v2TagCreator.DEFAULT_PADDING);
+			content[0] = tagBuffer;
 			fc.position(0);
 			fc.write(content);
 		}
@@ -45,6 +45,36 @@ public class LameMPEGFrame {
 	/**  Contains the bitset representing this Lame Frame */
 	private boolean containsLameFrame = false;
 
+	/**  The encoder name and version, eg "LAME3.99r" */
+	private String encoder;
+
+	/**  The number of samples added by the encoder at the beginning */
+	private int encoderDelay;
+
+	/**  The number of samples added by the encoder at the end */
+	private int encoderPadding;
+
+	/**  The lowpass filter frequency in Hz, 0 if unknown */
+	private int lowpass;
+
+	/**  The length in bytes of the audio, from the first frame to the last one */
+	private int musicLength;
+
+	/**  The CRC-16 of the audio */
+	private int musicCRC;
+
+	/**  The peak signal amplitude, 1.0 being the full scale, 0 if unknown */
+	private float peak;
+
+	/**  The radio (track) ReplayGain in dB, NaN if not set */
+	private float trackGain = Float.NaN;
+
+	/**  The audiophile (album) ReplayGain in dB, NaN if not set */
+	private float albumGain = Float.NaN;
+
+	/**  The size of the Lame extension of the Xing header */
+	public final static int SIZE = 36;
+
 
 	/**
 	 *  Creates a Lame Mpeg Frame and checks it's integrity
@@ -76,6 +106,16 @@ public class LameMPEGFrame {
 				bitrate = b[20];
 				fileSize = b[28] * 16777215 + b[29] * 65535 + b[30] * 255 + b[31];
 			}
+			
+			encoder = new String( lameHeader, 0, 9 ).trim();
+			lowpass = b[10] * 100;
+			peak = ( b[11] << 24 | b[12] << 16 | b[13] << 8 | b[14] ) / (float) ( 1 << 23 );
+			readReplayGain( b[15] << 8 | b[16] );
+			readReplayGain( b[17] << 8 | b[18] );
+			encoderDelay = b[21] << 4 | b[22] >>> 4;
+			encoderPadding = ( b[22] & 0x0F ) << 8 | b[23];
+			musicLength = b[28] << 24 | b[29] << 16 | b[30] << 8 | b[31];
+			musicCRC = b[32] << 8 | b[33];
 		}
 		else
 			//Pas de frame VBR MP3 Lame
@@ -83,6 +123,24 @@ public class LameMPEGFrame {
 
 	}
 	
+	/**
+	 *  Decodes a ReplayGain field: 3 bits for the name (1 radio, 2 audiophile),
+	 *  3 bits for the originator, the sign and the gain in tenths of dB
+	 *
+	 * @param  field  the 16 bits of the field
+	 */
+	private void readReplayGain( int field ) {
+		int name = field >>> 13;
+		float gain = ( field & 0x1FF ) / 10f;
+		if ( ( field & 0x200 ) != 0 )
+			gain = -gain;
+
+		if ( name == 1 )
+			trackGain = gain;
+		else if ( name == 2 )
+			albumGain = gain;
+	}
+	
 	private int[] u(byte[] b) {
 		int[] i = new int[b.length];
 		for(int j = 0; j<i.length; j++)
@@ -91,6 +149,69 @@ public class LameMPEGFrame {
 	}
 
 
+	/**
+	 * @return    The audiophile (album) ReplayGain in dB, NaN if not set
+	 */
+	public float getAlbumGain() {
+		return albumGain;
+	}
+
+	/**
+	 * @return    The encoder name and version, eg "LAME3.99r"
+	 */
+	public String getEncoder() {
+		return encoder;
+	}
+
+	/**
+	 * @return    The number of samples added by the encoder at the beginning, to skip for gapless playback
+	 */
+	public int getEncoderDelay() {
+		return encoderDelay;
+	}
+
+	/**
+	 * @return    The number of samples added by the encoder at the end, to skip for gapless playback
+	 */
+	public int getEncoderPadding() {
+		return encoderPadding;
+	}
+
+	/**
+	 * @return    The lowpass filter frequency in Hz, 0 if unknown
+	 */
+	public int getLowpass() {
+		return lowpass;
+	}
+
+	/**
+	 * @return    The CRC-16 of the audio data
+	 */
+	public int getMusicCRC() {
+		return musicCRC;
+	}
+
+	/**
+	 * @return    The length in bytes of the audio data, Xing frame included
+	 */
+	public int getMusicLength() {
+		return musicLength;
+	}
+
+	/**
+	 * @return    The peak signal amplitude, 1.0 being the full scale, 0 if unknown
+	 */
+	public float getPeak() {
+		return peak;
+	}
+
+	/**
+	 * @return    The radio (track) ReplayGain in dB, NaN if not set
+	 */
+	public float getTrackGain() {
+		return trackGain;
+	}
+
 	/**
 	 *  Gets the valid attribute of the LameMPEGFrame object
 	 *
@@ -0,0 +1,212 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.mp3.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import entagged.audioformats.generic.TagField;
+import entagged.audioformats.mp3.Id3v2Tag;
+import entagged.audioformats.mp3.util.id3frames.Id3Frame;
+
+/**
+ * This class is an ID3V2 tag whose frames are only decoded when they are
+ * accessed.<br>
+ * The reader only records the location of each frame in the tag data. A frame
+ * is decoded into an {@link Id3Frame} on the first access to its id (
+ * {@link #get(String)}, <code>getFirstTitle()</code>, ...), and all the
+ * frames are decoded by the operations working on the whole tag, like
+ * {@link #getFields()}.<br>
+ * The tag data is kept until every frame has been decoded.<br>
+ * As the read accessors decode frames and add them to the tag, this tag is not
+ * safe for concurrent reads, unlike a tag read at once. A tag shared between
+ * threads, like the ones given by the AudioFileScanner, must be synchronized
+ * by its users, or fully decoded first by a call to {@link #getFields()},
+ * after which reading it changes nothing.
+ * 
+ * @see Id3v24TagReader#read(ByteBuffer, boolean[], byte, boolean)
+ */
+class LazyId3v2Tag extends Id3v2Tag {
+
+	/**
+	 * The tag data, the frames are located by absolute offsets.
+	 */
+	private ByteBuffer data;
+
+	/**
+	 * The reader used to decode the frames.
+	 */
+	private final Id3v24TagReader reader;
+
+	/**
+	 * This map stores the ids of the frames not decoded yet to a list of their
+	 * locations, as <code>int[] {offset, length}</code>.
+	 */
+	private final HashMap undecoded = new HashMap();
+
+	/**
+	 * The version of the tag data.
+	 */
+	private final byte version;
+
+	/**
+	 * Creates an instance.
+	 * 
+	 * @param data
+	 *            The tag data.
+	 * @param version
+	 *            The ID3V2 version of the data.
+	 * @param reader
+	 *            The reader used to decode the frames.
+	 */
+	LazyId3v2Tag(ByteBuffer data, byte version, Id3v24TagReader reader) {
+		this.data = data;
+		this.version = version;
+		this.reader = reader;
+	}
+
+	/**
+	 * (overridden) The frames of the same id already in the file are decoded
+	 * before, so they stay in front of the new one.
+	 * 
+	 * @see entagged.audioformats.generic.AbstractTag#add(entagged.audioformats.generic.TagField)
+	 */
+	public void add(TagField field) {
+		if (field != null)
+			decode(field.getId());
+		super.add(field);
+	}
+
+	/**
+	 * Records a frame to be decoded later.
+	 * 
+	 * @param id
+	 *            The id of the frame (converted to version 3 names).
+	 * @param offset
+	 *            The offset of the frame content in the tag data.
+	 * @param length
+	 *            The length of the frame content.
+	 */
+	void addUndecoded(String id, int offset, int length) {
+		List list = (List) undecoded.get(id);
+		if (list == null) {
+			list = new ArrayList(1);
+			undecoded.put(id, list);
+		}
+		list.add(new int[] { offset, length });
+	}
+
+	/**
+	 * Decodes the frames of the given id, if not done yet.
+	 * 
+	 * @param id
+	 *            The frame id.
+	 */
+	private void decode(String id) {
+		List list = (List) undecoded.remove(id);
+		if (list == null)
+			return;
+
+		for (int i = 0; i < list.size(); i++) {
+			int[] location = (int[]) list.get(i);
+			byte[] b = new byte[location[1]];
+			ByteBuffer frame = data.duplicate();
+			frame.position(location[0]);
+			frame.get(b);
+			/*
+			 * As when the tag is read, an invalid frame is dropped without
+			 * affecting the other ones.
+			 */
+			try {
+				super.add(reader.createId3Frame(id, b, version));
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+		if (undecoded.isEmpty())
+			data = null;
+	}
+
+	/**
+	 * Decodes all the frames not decoded yet.
+	 */
+	private void decodeAll() {
+		Object[] ids = undecoded.keySet().toArray();
+		for (int i = 0; i < ids.length; i++)
+			decode((String) ids[i]);
+	}
+
+	/**
+	 * (overridden)
+	 * 
+	 * @see entagged.audioformats.generic.AbstractTag#get(java.lang.String)
+	 */
+	public List get(String id) {
+		decode(id);
+		return super.get(id);
+	}
+
+	/**
+	 * (overridden)
+	 * 
+	 * @see entagged.audioformats.generic.AbstractTag#getFields()
+	 */
+	public Iterator getFields() {
+		decodeAll();
+		return super.getFields();
+	}
+
+	/**
+	 * (overridden)
+	 * 
+	 * @see entagged.audioformats.generic.AbstractTag#hasCommonFields()
+	 */
+	public boolean hasCommonFields() {
+		decodeAll();
+		return super.hasCommonFields();
+	}
+
+	/**
+	 * (overridden) Frames which cannot be decoded are not part of the tag, so
+	 * the tag is only empty if none of them can.
+	 * 
+	 * @see entagged.audioformats.generic.AbstractTag#isEmpty()
+	 */
+	public boolean isEmpty() {
+		if (!super.isEmpty())
+			return false;
+		decodeAll();
+		return super.isEmpty();
+	}
+
+	/**
+	 * (overridden)
+	 * 
+	 * @see entagged.audioformats.generic.AbstractTag#set(entagged.audioformats.generic.TagField)
+	 */
+	public void set(TagField field) {
+		if (field != null)
+			decode(field.getId());
+		super.set(field);
+	}
+}
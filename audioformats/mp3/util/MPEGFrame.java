@@ -18,54 +18,19 @@
  */
 package entagged.audioformats.mp3.util;
 
-
+import java.nio.ByteBuffer;
 
 /**
- *  Create a MPEG Frame object that represent a Mpeg frame in a mp3 file !! Contains an exception that should be modified !! $Id: MPEGFrame.java,v 1.7 2005/05/19 16:00:15 kikidonk Exp $
+ *  Create a MPEG Frame object that represent a Mpeg frame in a mp3 file !! Contains an exception that should be modified !! $Id: MPEGFrame.java,v 1.7 2005/05/19 16:00:15 kikidonk Exp $<br>
+ *  The 4 bytes of the header are kept packed in an int, and the static methods taking such an
+ *  int decode a header without creating any object, for the code walking through all the frames
+ *  of a file. The strings are only built when a description is asked for.
  *
  * @author     Raphael Slinckx (KiKiDonK)
  * @version    v0.03
  */
 public class MPEGFrame {
 	
-	private byte[] mpegBytes;
-
-	/**  The version of this MPEG frame (see the constants) */
-	private int MPEGVersion;
-
-	/**  Bitrate of this frame */
-	private int bitrate;
-
-	/**  Channel Mode of this Frame (see constants) */
-	private int channelMode;
-
-	/**  Emphasis mode string */
-	private String emphasis;
-
-	/**  Flag indicating if this frame has padding byte */
-	private boolean hasPadding;
-
-	/**  Flag indicating if this frame contains copyrighted material */
-	private boolean isCopyrighted;
-
-	/**  Flag indicating if this frame contains original material */
-	private boolean isOriginal;
-
-	/**  Flag indicating if this frame is protected */
-	private boolean isProtected;
-
-	/**  Flag indicating if this is a valid MPEG Frame */
-	private boolean isValid;
-
-	/**  Contains the mpeg layer of this frame (see constants) */
-	private int layer;
-
-	/**  Mode Extension of this frame */
-	private String modeExtension;
-
-	/**  Sampling rate of this frame in kbps */
-	private int samplingRate;
-
 	/**  Constant holding the Dual Channel Stereo Mode */
 	public final static int CHANNEL_MODE_DUAL_CHANNEL = 2;
 
@@ -161,37 +126,169 @@ public class MPEGFrame {
 			{11025, 12000, 8000, 0}  //V3
 			};
 
+	/**  Number of samples in a frame, for each layer (reserved, III, II, I) */
 	private final static int[] SAMPLE_NUMBERS = {-1, 1152, 1152, 384};
-	
+
+	/**  The 4 bytes of the header of this frame */
+	private final int header;
+
+	/**  Flag indicating if this is a valid MPEG Frame */
+	private final boolean isValid;
+
 	/**
 	 *  Creates a new MPEG frame with the given bytre array and decodes its contents
 	 *
 	 * @param  b  the array of bytes representing this mpeg frame
 	 */
 	public MPEGFrame( byte[] b ) {
-		this.mpegBytes = b;
-		
-		if ( isMPEGFrame() ) {
-			MPEGVersion = MPEGVersion();
-			layer = layerDescription();
-			isProtected = isProtected();
-			bitrate = bitrate();
-			samplingRate = samplingRate();
-			hasPadding = hasPadding();
-			//privateBit();
-			channelMode = channelMode();
-			modeExtension = modeExtension();
-			isCopyrighted = isCopyrighted();
-			isOriginal = isOriginal();
-			emphasis = emphasis();
-			isValid = true;
+		this( getHeader( b, 0 ) );
+	}
 
-		}
+	/**
+	 *  Creates a new MPEG frame with the given packed header
+	 *
+	 * @param  header  the 4 bytes of the header, as returned by getHeader
+	 */
+	public MPEGFrame( int header ) {
+		this.header = header;
+		this.isValid = isMPEGFrame( header );
+	}
+
+	/**
+	 *  Packs the 4 bytes of the header at the given offset into an int
+	 *
+	 * @param  b  the array containing the header
+	 * @param  offset  the offset of the header in the array
+	 * @return    the packed header
+	 */
+	public static int getHeader( byte[] b, int offset ) {
+		return (b[offset]&0xFF) << 24 | (b[offset + 1]&0xFF) << 16 | (b[offset + 2]&0xFF) << 8 | (b[offset + 3]&0xFF);
+	}
+
+	/**
+	 *  Packs the 4 bytes of the header at the given index of the buffer into an int,
+	 *  whatever the byte order of the buffer
+	 *
+	 * @param  b  the buffer containing the header
+	 * @param  index  the index of the header in the buffer
+	 * @return    the packed header
+	 */
+	public static int getHeader( ByteBuffer b, int index ) {
+		return (b.get( index )&0xFF) << 24 | (b.get( index + 1 )&0xFF) << 16 | (b.get( index + 2 )&0xFF) << 8 | (b.get( index + 3 )&0xFF);
+	}
+
+	/**
+	 *  Checks the sync mark of a packed header
+	 *
+	 * @param  header  the packed header
+	 * @return    true if the header starts with the sync mark
+	 */
+	public static boolean isMPEGFrame( int header ) {
+		return (header & 0xFFE00000) == 0xFFE00000;
+	}
+
+	/**
+	 *  Checks the sync mark of a packed header, and that its layer, bitrate and
+	 *  sampling rate are not reserved values
+	 *
+	 * @param  header  the packed header
+	 * @return    true if the header can be the one of a frame
+	 */
+	public static boolean isHeader( int header ) {
+		return isMPEGFrame( header ) && (header & 0x00060000) != 0
+				&& (header & 0x0000F000) != 0x0000F000 && (header & 0x00000C00) != 0x00000C00;
+	}
+
+	/**
+	 *  Gets the Mpeg version of a packed header (see constants)
+	 */
+	public static int getMPEGVersion( int header ) {
+		return MPEGVersionTable[(header >>> 19) & 0x03];
+	}
+
+	/**
+	 *  Gets the layer of a packed header (see constants)
+	 */
+	public static int getLayerVersion( int header ) {
+		return layerDescriptionTable[(header >>> 17) & 0x03];
+	}
+
+	/**
+	 *  Gets the bitrate of a packed header in kbps, 0 for free format and -1 if reserved
+	 */
+	public static int getBitrate( int header ) {
+		int index1 = ( getMPEGVersion( header ) == MPEG_VERSION_1 ) ? 0 : 1;
+		int layer = getLayerVersion( header );
+		int index2;
+
+		if ( layer == LAYER_I )
+			index2 = 0;
+		else if ( layer == LAYER_II )
+			index2 = 1;
 		else
-			//Ce n'est pas un frame MPEG
-			isValid = false;
-		this.mpegBytes = null;
+			index2 = 2;
+		return bitrateTable[index1][index2][(header >>> 12) & 0x0F];
+	}
+
+	/**
+	 *  Gets the sampling rate of a packed header in Hz, 0 if reserved
+	 */
+	public static int getSamplingRate( int header ) {
+		int version = getMPEGVersion( header );
+		int index1;
+
+		if ( version == MPEG_VERSION_1 )
+			index1 = 0;
+		else if ( version == MPEG_VERSION_2 )
+			index1 = 1;
+		else
+			index1 = 2;
+		return samplingRateTable[index1][(header >>> 10) & 0x03];
+	}
+
+	/**
+	 *  Gets the channel mode of a packed header (see constants)
+	 */
+	public static int getChannelMode( int header ) {
+		return (header >>> 6) & 0x03;
+	}
 
+	/**
+	 *  Gets the length of the padding of a packed header in bytes
+	 */
+	public static int getPaddingLength( int header ) {
+		if ( (header & 0x00000200) == 0 )
+			return 0;
+		return getLayerVersion( header ) == LAYER_I ? 4 : 1;
+	}
+
+	/**
+	 *  Gets the number of samples of the frame of a packed header
+	 */
+	public static int getSampleNumber( int header ) {
+		int layer = getLayerVersion( header );
+		if ( layer == LAYER_III && getMPEGVersion( header ) != MPEG_VERSION_1 )
+			return 576;
+		return SAMPLE_NUMBERS[layer];
+	}
+
+	/**
+	 *  Gets the length in bytes of the frame of a packed header, header included
+	 *
+	 * @return the length, 0 if it cannot be computed (free format or reserved values)
+	 */
+	public static int getFrameLength( int header ) {
+		int bitrate = getBitrate( header );
+		int samplingRate = getSamplingRate( header );
+		if ( bitrate <= 0 || samplingRate == 0 || getLayerVersion( header ) == LAYER_RESERVED
+				|| getMPEGVersion( header ) == MPEG_VERSION_RESERVED )
+			return 0;
+
+		if ( getLayerVersion( header ) == LAYER_I )
+			return (12 * (bitrate * 1000) / samplingRate + getPaddingLength( header )) * 4;
+
+		// A layer III frame of MPEG 2 and 2.5 holds half as many samples
+		return getSampleNumber( header ) / 8 * (bitrate * 1000) / samplingRate + getPaddingLength( header );
 	}
 
 
@@ -201,7 +298,7 @@ public class MPEGFrame {
 	 * @return    The bitrate value
 	 */
 	public int getBitrate() {
-		return bitrate;
+		return getBitrate( header );
 	}
 
 
@@ -211,7 +308,7 @@ public class MPEGFrame {
 	 * @return    The channelMode value
 	 */
 	public int getChannelNumber() {
-		switch(channelMode) {
+		switch(getChannelMode()) {
 			case CHANNEL_MODE_DUAL_CHANNEL: return 2;
 			case CHANNEL_MODE_JOINT_STEREO: return 2;
 			case CHANNEL_MODE_MONO: return 1;
@@ -221,7 +318,17 @@ public class MPEGFrame {
 	}
 	
 	public int getChannelMode() {
-		return channelMode;
+		return getChannelMode( header );
+	}
+
+
+	/**
+	 *  Gets the packed header of this frame
+	 *
+	 * @return    The 4 bytes of the header
+	 */
+	public int getHeader() {
+		return header;
 	}
 
 
@@ -231,7 +338,7 @@ public class MPEGFrame {
 	 * @return    The layerVersion value
 	 */
 	public int getLayerVersion() {
-		return layer;
+		return getLayerVersion( header );
 	}
 
 
@@ -241,7 +348,7 @@ public class MPEGFrame {
 	 * @return    The mPEGVersion value
 	 */
 	public int getMPEGVersion() {
-		return MPEGVersion;
+		return getMPEGVersion( header );
 	}
 
 
@@ -251,12 +358,7 @@ public class MPEGFrame {
 	 * @return    The paddingLength value
 	 */
 	public int getPaddingLength() {
-		if ( hasPadding && layer != LAYER_I)
-			return 1;
-		if ( hasPadding && layer == LAYER_I)
-		    return 4;
-		
-		return 0;
+		return getPaddingLength( header );
 	}
 
 
@@ -266,7 +368,7 @@ public class MPEGFrame {
 	 * @return    The samplingRate value
 	 */
 	public int getSamplingRate() {
-		return samplingRate;
+		return getSamplingRate( header );
 	}
 
 
@@ -285,21 +387,12 @@ public class MPEGFrame {
 	 * @return the length in bytes of this frame
 	 */
 	public int getFrameLength() {
-	    if (layer == LAYER_I) {
-	        return (12 * (getBitrate() * 1000) / getSamplingRate() + getPaddingLength()) * 4;
-	    }
-	    
-	    return 144 * (getBitrate() * 1000) / getSamplingRate() + getPaddingLength();	
+		return getFrameLength( header );
 	}
 
 	
 	public int getSampleNumber() {
-	    int sn = SAMPLE_NUMBERS[layer];
-	    
-	    //if ( ( MPEGVersion == MPEGFrame.MPEG_VERSION_2 ) || ( MPEGVersion == MPEGFrame.MPEG_VERSION_2_5 ) && (layer == LAYER_III))
-			//sn = sn/2;
-	    
-	    return sn;
+		return getSampleNumber( header );
 	}
 
 	/**
@@ -343,10 +436,10 @@ public class MPEGFrame {
 	public String toString() {
 		String output = "\n----MPEGFrame--------------------\n";
 
-		output += "MPEG Version: " + MPEGVersionToString( MPEGVersion ) + "\tLayer: " + layerToString( layer ) + "\n";
-		output += "Bitrate: " + bitrate + "\tSamp.Freq.: " + samplingRate + "\tChan.Mode: " + channelModeToString( channelMode ) + "\n";
-		output += "Mode Extension: " + modeExtension + "\tEmphasis: " + emphasis + "\n";
-		output += "Padding? " + hasPadding + "\tProtected? " + isProtected + "\tCopyright? " + isCopyrighted + "\tOriginal? " + isOriginal + "\n";
+		output += "MPEG Version: " + MPEGVersionToString( getMPEGVersion() ) + "\tLayer: " + layerToString( getLayerVersion() ) + "\n";
+		output += "Bitrate: " + getBitrate() + "\tSamp.Freq.: " + getSamplingRate() + "\tChan.Mode: " + channelModeToString( getChannelMode() ) + "\n";
+		output += "Mode Extension: " + modeExtension() + "\tEmphasis: " + emphasis() + "\n";
+		output += "Padding? " + hasPadding() + "\tProtected? " + isProtected() + "\tCopyright? " + isCopyrighted() + "\tOriginal? " + isOriginal() + "\n";
 		output += "--------------------------------";
 		return output;
 	}
@@ -358,17 +451,7 @@ public class MPEGFrame {
 	 * @return    The copyrighted value
 	 */
 	private boolean isCopyrighted() {
-		return ( (mpegBytes[3]&0x08) == 0x08);
-	}
-
-
-	/**
-	 *  Gets the mPEGFrame attribute of the MPEGFrame object
-	 *
-	 * @return    The mPEGFrame value
-	 */
-	private boolean isMPEGFrame() {
-		return ( (mpegBytes[0]&0xFF) == 0xFF ) && ( (mpegBytes[1]&0xE0) == 0xE0 );
+		return (header & 0x08) == 0x08;
 	}
 
 
@@ -378,7 +461,7 @@ public class MPEGFrame {
 	 * @return    The original value
 	 */
 	private boolean isOriginal() {
-		return (mpegBytes[3]&0x04) == 0x04;
+		return (header & 0x04) == 0x04;
 	}
 
 
@@ -388,53 +471,7 @@ public class MPEGFrame {
 	 * @return    The protected value
 	 */
 	private boolean isProtected() {
-		return (mpegBytes[1]&0x01) == 0x00;
-	}
-
-
-	/**
-	 *  get the Mpeg version of this frame as an int value (see constants)
-	 *
-	 * @return    the int value describing the Mpeg version
-	 */
-	private int MPEGVersion() {
-		//System.err.println("V.:"+mpegBytes[1]+"|"+(mpegBytes[1]&0x18)+"|"+((mpegBytes[1]&0x18) >>> 3));
-		int index = ((mpegBytes[1]&0x18) >>> 3);
-		//System.err.println(MPEGVersionTable[index]);
-
-		return MPEGVersionTable[index];
-	}
-
-
-	/**
-	 *  get the bitrate of this frame
-	 *
-	 * @return    the bitrate in kbps
-	 */
-	private int bitrate() {
-		int index3 = ((mpegBytes[2]&0xF0) >>> 4);
-		int index1 = ( MPEGVersion == MPEG_VERSION_1 ) ? 0 : 1;
-		int index2;
-
-		if ( layer == LAYER_I )
-			index2 = 0;
-		else if ( layer == LAYER_II )
-			index2 = 1;
-		else
-			index2 = 2;
-		return bitrateTable[index1][index2][index3];
-	}
-
-
-	/**
-	 *  get the Mpeg channel mode of this frame as a constant (see constants)
-	 *
-	 * @return    the constant holding the channel mode
-	 */
-	private int channelMode() {
-		int index = ((mpegBytes[3]&0xC0) >>> 6);
-
-		return index;
+		return (header & 0x00010000) == 0;
 	}
 
 
@@ -444,9 +481,7 @@ public class MPEGFrame {
 	 * @return    the emphasis mode
 	 */
 	private String emphasis() {
-		int index = (mpegBytes[3]&0x03);
-
-		return emphasisTable[index];
+		return emphasisTable[header & 0x03];
 	}
 
 
@@ -456,19 +491,7 @@ public class MPEGFrame {
 	 * @return    a boolean indicating if this frame uses padding
 	 */
 	private boolean hasPadding() {
-		return (mpegBytes[2]&0x02) == 0x02;
-	}
-
-
-	/**
-	 *  Get the layer version of this frame as a constant int value (see constants)
-	 *
-	 * @return    the layer version constant
-	 */
-	private int layerDescription() {
-		int index = ((mpegBytes[1]&0x06) >>> 1);
-
-		return layerDescriptionTable[index];
+		return (header & 0x00000200) != 0;
 	}
 
 
@@ -478,30 +501,9 @@ public class MPEGFrame {
 	 * @return    mode extension of this frame
 	 */
 	private String modeExtension() {
-		int index2 = ((mpegBytes[3]&0x30) >>> 4);
-		int index1 = ( layer == LAYER_III ) ? 1 : 0;
+		int index1 = ( getLayerVersion() == LAYER_III ) ? 1 : 0;
 
-		return modeExtensionTable[index1][index2];
-	}
-
-
-	/**
-	 *  get the sampling rate in Hz of this frame
-	 *
-	 * @return    the sampling rate in Hz of this frame
-	 */
-	private int samplingRate() {
-		int index2 = ((mpegBytes[2]&0x0c) >>> 2);
-		int index1;
-
-		if ( MPEGVersion == MPEG_VERSION_1 )
-			index1 = 0;
-		else if ( MPEGVersion == MPEG_VERSION_2 )
-			index1 = 1;
-		else
-			index1 = 2;
-		return samplingRateTable[index1][index2];
+		return modeExtensionTable[index1][(header >>> 4) & 0x03];
 	}
 
 }
-
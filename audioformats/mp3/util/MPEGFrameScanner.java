@@ -0,0 +1,161 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.mp3.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Searches a file for the first MPEG frame, skipping the garbage or the
+ * padding that can be found between the ID3v2 tag and the audio data.<br>
+ * The file is read by large blocks which are scanned in memory for the sync
+ * mark. A header found this way is only accepted if other headers of the
+ * same stream follow it at the computed frame lengths, which rejects the
+ * false syncs found in the garbage. If no header is confirmed within
+ * {@link #CANDIDATE_SEARCH} bytes after the first one found, that first one
+ * is used, so that files with a single or damaged frames stay readable
+ * without reading them to the end.<br>
+ * The channel is read with positional reads, its position is not changed.
+ */
+public class MPEGFrameScanner {
+
+	/**
+	 * Size of the blocks read from the file.
+	 */
+	public final static int BLOCK_SIZE = 64 * 1024;
+
+	/**
+	 * Number of frames which must follow a header for it to be accepted.
+	 */
+	private final static int CONFIRMED_FRAMES = 3;
+
+	/**
+	 * Number of bytes searched after the first unconfirmed header before it
+	 * is returned.
+	 */
+	public final static int CANDIDATE_SEARCH = 2 * BLOCK_SIZE;
+
+	/**
+	 * Returns the offset of the first MPEG frame found at or after the given
+	 * offset.
+	 * 
+	 * @param fc
+	 *            The file to search
+	 * @param from
+	 *            The offset where the search begins
+	 * @return The offset of the frame header, or -1 if none is found.
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public long find(FileChannel fc, long from) throws IOException {
+		long size = fc.size();
+		ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+		byte[] b = block.array();
+		ByteBuffer next = ByteBuffer.allocate(4);
+		long firstCandidate = -1;
+
+		long pos = from;
+		while (pos <= size - 4) {
+			if (firstCandidate != -1 && pos - firstCandidate > CANDIDATE_SEARCH)
+				break;
+
+			int n = fill(fc, block, pos);
+			if (n < 4)
+				break;
+
+			for (int i = 0; i <= n - 4; i++) {
+				if (b[i] != (byte) 0xFF
+						|| !MPEGFrame.isHeader(MPEGFrame.getHeader(b, i)))
+					continue;
+
+				long offset = pos + i;
+				int confirmed = confirm(fc, size, b, i, n, offset, next);
+				if (confirmed == CONFIRMED_FRAMES)
+					return offset;
+
+				// Kept in case nothing better is found (free format, damaged or
+				// very short files)
+				if (firstCandidate == -1)
+					firstCandidate = offset;
+			}
+			// The last 3 bytes can start a header continuing in the next block
+			pos += n - 3;
+		}
+		return firstCandidate;
+	}
+
+	/**
+	 * Follows the headers starting at b[i], and returns the number of
+	 * headers found after it, up to CONFIRMED_FRAMES, or -1 if the chain
+	 * cannot be followed further (free format or end of the file) before
+	 * an invalid header is met.
+	 */
+	private int confirm(FileChannel fc, long size, byte[] b, int i, int n,
+			long offset, ByteBuffer next) throws IOException {
+		int header = MPEGFrame.getHeader(b, i);
+		// Index of the header in the block, -1 once past the block
+		int index = i;
+		for (int count = 0; count < CONFIRMED_FRAMES; count++) {
+			int length = MPEGFrame.getFrameLength(header);
+			if (length <= 0 || offset + length + 4 > size)
+				return -1;
+
+			offset += length;
+			int nextHeader;
+			if (index != -1 && index + length <= n - 4) {
+				index += length;
+				nextHeader = MPEGFrame.getHeader(b, index);
+			} else {
+				fill(fc, next, offset);
+				nextHeader = MPEGFrame.getHeader(next, 0);
+				index = -1;
+			}
+			if (!follows(header, nextHeader))
+				return count;
+
+			header = nextHeader;
+		}
+		return CONFIRMED_FRAMES;
+	}
+
+	/**
+	 * Checks that the second header is a valid header of the same stream as
+	 * the first one (same version, layer and sampling rate).
+	 */
+	static boolean follows(int header, int nextHeader) {
+		return MPEGFrame.isHeader(nextHeader)
+				&& (header & 0xFFFE0C00) == (nextHeader & 0xFFFE0C00);
+	}
+
+	/**
+	 * Reads from the given offset until the buffer is full or the end of the
+	 * file is reached, and returns the number of bytes read.
+	 */
+	static int fill(FileChannel fc, ByteBuffer buffer, long offset)
+			throws IOException {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			int read = fc.read(buffer, offset + buffer.position());
+			if (read == -1)
+				break;
+		}
+		return buffer.position();
+	}
+}
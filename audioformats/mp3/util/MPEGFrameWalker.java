@@ -0,0 +1,278 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.mp3.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Walks all the MPEG frames of a file, from one header to the next, to count
+ * them and the samples they contain.<br>
+ * The file is read by blocks of {@link MPEGFrameScanner#BLOCK_SIZE} bytes, and
+ * only the frame headers are decoded, with the static methods of MPEGFrame
+ * which create no object, so the walk is bound by the speed of the disk.<br>
+ * When no valid header of the stream is found where the previous frame ends,
+ * the walk stops if a trailing tag (ID3v1, APE, Lyrics3) begins there.
+ * Otherwise the frame is damaged, and the walk goes on from the next header
+ * found by the {@link MPEGFrameScanner}, so a damaged frame in the middle of
+ * the file does not cut the count short. It also stops at the end of the file
+ * or at a truncated last frame.
+ */
+public class MPEGFrameWalker {
+
+	/** Marks at the beginning of the trailing tags */
+	private final static byte[] ID3V1_MARK = { 'T', 'A', 'G' };
+
+	private final static byte[] APE_MARK = { 'A', 'P', 'E', 'T', 'A', 'G',
+			'E', 'X' };
+
+	private final static byte[] LYRICS3_MARK = { 'L', 'Y', 'R', 'I', 'C', 'S',
+			'B', 'E', 'G', 'I', 'N' };
+
+	/** Bytes needed in the block to recognize any trailing tag */
+	private final static int TRAILER_MARK_SIZE = 11;
+
+	/** Finds the next frame after a damaged one */
+	private final MPEGFrameScanner scanner = new MPEGFrameScanner();
+
+	/** Offset of the first frame walked */
+	private long audioStart;
+
+	/** Offset of the byte following the last frame walked */
+	private long audioEnd;
+
+	/** Sum of the bitrates of all the frames, in kbps */
+	private long bitrateSum;
+
+	/** The number of frames walked */
+	private int frameCount;
+
+	/** The number of samples contained in the frames */
+	private long sampleCount;
+
+	/** Sampling rate of the first frame */
+	private int samplingRate;
+
+	/** Flag indicating if the frames have different bitrates */
+	private boolean vbr;
+
+	/** Number of frames between two recorded offsets, 0 to record none */
+	private int seekInterval = 0;
+
+	/** The recorded offsets, one every seekInterval frames */
+	private long[] seekOffsets = null;
+
+	/** The number of recorded offsets */
+	private int seekOffsetCount = 0;
+
+	/**
+	 * Walks the frames starting at the given offset. The results of a previous
+	 * walk are replaced.
+	 * 
+	 * @param fc
+	 *            The file to read, its position is not changed
+	 * @param from
+	 *            The offset of the first frame header
+	 * @param end
+	 *            The offset where the walk must stop at the latest
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public void walk(FileChannel fc, long from, long end) throws IOException {
+		ByteBuffer block = ByteBuffer.allocate(MPEGFrameScanner.BLOCK_SIZE);
+		byte[] b = block.array();
+		long blockStart = 0;
+		int n = 0;
+
+		frameCount = 0;
+		sampleCount = 0;
+		bitrateSum = 0;
+		samplingRate = 0;
+		vbr = false;
+		seekOffsetCount = 0;
+		seekOffsets = seekInterval > 0 ? new long[256] : null;
+
+		int firstBitrate = 0;
+		int firstHeader = 0;
+		long pos = from;
+		audioStart = from;
+		audioEnd = from;
+		while (pos + 4 <= end) {
+			if (pos < blockStart || pos + TRAILER_MARK_SIZE > blockStart + n) {
+				n = MPEGFrameScanner.fill(fc, block, pos);
+				blockStart = pos;
+				if (n < 4)
+					break;
+			}
+
+			int i = (int) (pos - blockStart);
+			int header = MPEGFrame.getHeader(b, i);
+			// Version, layer and sampling rate must stay those of the stream
+			int length = MPEGFrame.getFrameLength(header);
+			if ((frameCount == 0 ? !MPEGFrame.isHeader(header)
+					: !MPEGFrameScanner.follows(firstHeader, header))
+					|| length <= 0) {
+				if (isTrailer(b, i, n))
+					break;
+
+				pos = scanner.find(fc, pos + 1);
+				if (pos == -1)
+					break;
+				continue;
+			}
+
+			// Truncated last frame
+			if (pos + length > end)
+				break;
+
+			int bitrate = MPEGFrame.getBitrate(header);
+			if (frameCount == 0) {
+				firstHeader = header;
+				firstBitrate = bitrate;
+				samplingRate = MPEGFrame.getSamplingRate(header);
+			} else if (bitrate != firstBitrate) {
+				vbr = true;
+			}
+
+			if (seekInterval > 0 && frameCount % seekInterval == 0) {
+				if (seekOffsetCount == seekOffsets.length) {
+					long[] grown = new long[seekOffsetCount * 2];
+					System.arraycopy(seekOffsets, 0, grown, 0, seekOffsetCount);
+					seekOffsets = grown;
+				}
+				seekOffsets[seekOffsetCount++] = pos;
+			}
+
+			bitrateSum += bitrate;
+			sampleCount += MPEGFrame.getSampleNumber(header);
+			frameCount++;
+			pos += length;
+			audioEnd = pos;
+		}
+	}
+
+	/**
+	 * Checks whether a trailing tag begins at b[i]: an ID3v1 tag, an APE tag
+	 * with its header, or a Lyrics3 tag.
+	 */
+	private boolean isTrailer(byte[] b, int i, int n) {
+		return startsWith(b, i, n, ID3V1_MARK)
+				|| startsWith(b, i, n, APE_MARK)
+				|| startsWith(b, i, n, LYRICS3_MARK);
+	}
+
+	private boolean startsWith(byte[] b, int i, int n, byte[] mark) {
+		if (i + mark.length > n)
+			return false;
+		for (int j = 0; j < mark.length; j++)
+			if (b[i + j] != mark[j])
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return The offset of the first frame walked.
+	 */
+	public long getAudioStart() {
+		return audioStart;
+	}
+
+	/**
+	 * @return The offset of the byte following the last frame walked.
+	 */
+	public long getAudioEnd() {
+		return audioEnd;
+	}
+
+	/**
+	 * @return The average bitrate of the frames in kbps, or -1 if no frame was
+	 *         found.
+	 */
+	public int getBitrate() {
+		if (frameCount == 0)
+			return -1;
+		return (int) (bitrateSum / frameCount);
+	}
+
+	/**
+	 * @return The number of frames walked.
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return The number of frames between two recorded offsets.
+	 */
+	public int getSeekInterval() {
+		return seekInterval;
+	}
+
+	/**
+	 * @return The duration of the frames in seconds.
+	 */
+	public double getLength() {
+		if (samplingRate == 0)
+			return 0;
+		return ((double) sampleCount) / samplingRate;
+	}
+
+	/**
+	 * Returns the offsets recorded during the walk, the frame number
+	 * <code>i * getSeekInterval()</code> starts at offset <code>i</code>.
+	 * 
+	 * @return The offsets, or <code>null</code> if none were recorded.
+	 */
+	public long[] getSeekOffsets() {
+		if (seekOffsets == null)
+			return null;
+
+		long[] offsets = new long[seekOffsetCount];
+		System.arraycopy(seekOffsets, 0, offsets, 0, seekOffsetCount);
+		return offsets;
+	}
+
+	/**
+	 * @return The number of samples contained in the frames.
+	 */
+	public long getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * @return <code>true</code> if the frames don't all have the same
+	 *         bitrate.
+	 */
+	public boolean isVbr() {
+		return vbr;
+	}
+
+	/**
+	 * Sets the number of frames between two offsets recorded during the
+	 * next walk, for building a seek table. Default is 0, no offset is
+	 * recorded.
+	 * 
+	 * @param frames
+	 *            The number of frames.
+	 */
+	public void setSeekInterval(int frames) {
+		this.seekInterval = frames;
+	}
+}
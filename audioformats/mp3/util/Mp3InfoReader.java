@@ -20,12 +20,25 @@ package entagged.audioformats.mp3.util;
 
 import entagged.audioformats.EncodingInfo;
 import entagged.audioformats.exceptions.*;
+import entagged.audioformats.generic.AudioFileReader;
+import entagged.audioformats.generic.FileReadWindow;
 
 import java.io.*;
 
 public class Mp3InfoReader {
+	
+	private final MPEGFrameScanner scanner = new MPEGFrameScanner();
 
-	public EncodingInfo read( RandomAccessFile raf ) throws CannotReadException, IOException {
+	public EncodingInfo read( FileReadWindow raf ) throws CannotReadException, IOException {
+		return read( raf, 0 );
+	}
+	
+	/*
+	 * Same as above, with the read options of AudioFileReader. With EXACT_LENGTH,
+	 * the length and the bitrate are computed by walking all the frames instead
+	 * of being read from the VBR header or estimated from the first frame.
+	 */
+	public EncodingInfo read( FileReadWindow raf, int options ) throws CannotReadException, IOException {
 		EncodingInfo encodingInfo = new EncodingInfo();
 		
 		//Begin info fetch-------------------------------------------
@@ -53,17 +66,15 @@ public class Mp3InfoReader {
 
 		MPEGFrame firstFrame = null;
 		
-		byte[] b = new byte[4];
-		raf.read(b);
-		
 		// search for sync mark, but also for a right bitrate, samplerate and layer(that way you can
 		// read corrupted but playable files)
-		while ( !( (b[0]&0xFF)==0xFF  &&  (b[1]&0xE0)==0xE0 && (b[1]&0x06)!=0  && (b[2]&0xF0)!=0xF0  && (b[2]&0x0C)!=0x0C ) && raf.getFilePointer() < raf.length()-4) {
-			//System.err.println(sync[0]+"|"+(sync[1]&0xE0)+"|"+((sync[1]&0xE0)==0xE0));
-			raf.seek( raf.getFilePointer() - 3);
-			//raf.read(sync);
-			raf.read(b);
-		}
+		long frameOffset = scanner.find(raf.getChannel(), raf.getFilePointer());
+		if ( frameOffset == -1 )
+			throw new CannotReadException("Error: could not synchronize to first mp3 frame");
+		
+		byte[] b = new byte[4];
+		raf.seek( frameOffset );
+		raf.read(b);
 
 		//raf.seek( raf.getFilePointer() - 2 );
 		//System.err.println(raf.getFilePointer());
@@ -102,16 +113,11 @@ public class Mp3InfoReader {
 		int optionalFrameLength = 0;
 		//System.err.println(mp3File);
 		//System.err.println(raf.getFilePointer());
-		byte[] xingPart1 = new byte[16];
+		byte[] xing = new byte[120];
 
-		raf.read( xingPart1 );
-		raf.seek( raf.getFilePointer() + 100 );
-
-		byte[] xingPart2 = new byte[4];
-
-		raf.read( xingPart2 );
+		raf.read( xing );
 		
-		VbrInfoFrame vbrInfoFrame = new XingMPEGFrame( xingPart1, xingPart2 );
+		VbrInfoFrame vbrInfoFrame = new XingMPEGFrame( xing );
 		if ( vbrInfoFrame.isValid() ) {
 			optionalFrameLength += 120;
 			byte[] lameHeader = new byte[36];
@@ -120,8 +126,10 @@ public class Mp3InfoReader {
 			LameMPEGFrame currentLameFrame = new LameMPEGFrame( lameHeader );
 			if ( !currentLameFrame.isValid() )
 				raf.seek( raf.getFilePointer() - 36 ); //Skipping Lame frame reading
-			else
+			else {
 				optionalFrameLength += 36; //Lame Frame read
+				readLameInfos( currentLameFrame, encodingInfo );
+			}
 			
 			raf.seek( raf.getFilePointer() + firstFrameLength - ( skippedLength + optionalFrameLength + 4 ) );
 		} else {
@@ -162,6 +170,21 @@ public class Mp3InfoReader {
 		    encodingInfo.setBitrate( firstFrame.getBitrate() );
 		}
 		
+		if ( (options & AudioFileReader.EXACT_LENGTH) != 0 ) {
+			//Exact Method: counts the frames one by one, the Xing or VBRI frame holds no audio
+			long audioStart = frameOffset;
+			if ( vbrInfoFrame.isValid() )
+				audioStart += firstFrame.getFrameLength();
+			
+			MPEGFrameWalker walker = new MPEGFrameWalker();
+			walker.walk( raf.getChannel(), audioStart, raf.length() );
+			if ( walker.getFrameCount() > 0 ) {
+				lengthInSeconds = walker.getLength();
+				encodingInfo.setVbr( walker.isVbr() );
+				encodingInfo.setBitrate( walker.getBitrate() );
+			}
+		}
+		
 		//Populates encodingInfo----------------------------------------------------
 		encodingInfo.setPreciseLength ((float)lengthInSeconds );
 		encodingInfo.setChannelNumber( firstFrame.getChannelNumber() );
@@ -172,7 +195,29 @@ public class Mp3InfoReader {
 		return encodingInfo;
 	}
 	
-	private int read_syncsafe_integer(RandomAccessFile raf)
+	/*
+	 * Copies the encoder informations of the Lame extension in the encoding infos,
+	 * the fields with no value are not set.
+	 */
+	private void readLameInfos( LameMPEGFrame lame, EncodingInfo encodingInfo ) {
+		encodingInfo.setField( EncodingInfo.FIELD_ENCODER, lame.getEncoder() );
+		encodingInfo.setField( EncodingInfo.FIELD_ENCODER_DELAY, new Integer( lame.getEncoderDelay() ) );
+		encodingInfo.setField( EncodingInfo.FIELD_ENCODER_PADDING, new Integer( lame.getEncoderPadding() ) );
+		if ( lame.getLowpass() != 0 )
+			encodingInfo.setField( EncodingInfo.FIELD_LOWPASS, new Integer( lame.getLowpass() ) );
+		if ( lame.getPeak() != 0 )
+			encodingInfo.setField( EncodingInfo.FIELD_REPLAYGAIN_PEAK, new Float( lame.getPeak() ) );
+		if ( !Float.isNaN( lame.getTrackGain() ) )
+			encodingInfo.setField( EncodingInfo.FIELD_REPLAYGAIN_TRACK_GAIN, new Float( lame.getTrackGain() ) );
+		if ( !Float.isNaN( lame.getAlbumGain() ) )
+			encodingInfo.setField( EncodingInfo.FIELD_REPLAYGAIN_ALBUM_GAIN, new Float( lame.getAlbumGain() ) );
+		if ( lame.getMusicLength() != 0 ) {
+			encodingInfo.setField( EncodingInfo.FIELD_MUSIC_LENGTH, new Long( lame.getMusicLength() & 0xFFFFFFFFL ) );
+			encodingInfo.setField( EncodingInfo.FIELD_MUSIC_CRC, new Integer( lame.getMusicCRC() ) );
+		}
+	}
+	
+	private int read_syncsafe_integer(FileReadWindow raf)
 		throws IOException {
 		int value = 0;
 
@@ -0,0 +1,136 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.mp3.util;
+
+import java.io.IOException;
+
+import entagged.audioformats.exceptions.CannotReadException;
+import entagged.audioformats.generic.FileReadWindow;
+import entagged.audioformats.mp3.Mp3SeekTable;
+
+/**
+ * Builds the seek table of an MP3 file. The table of contents of the Xing
+ * header (100 entries, interpolated) or of the VBRI header (frame aligned) is
+ * used when there is one, otherwise the frames are walked and the offset of
+ * one frame every {@link #SCAN_INTERVAL} is kept.
+ */
+public class Mp3SeekTableReader {
+
+	/**
+	 * The number of frames between two offsets of the tables built by walking
+	 * the frames, about a quarter of second.
+	 */
+	public final static int SCAN_INTERVAL = 10;
+
+	private final MPEGFrameScanner scanner = new MPEGFrameScanner();
+
+	public Mp3SeekTable read(FileReadWindow raf) throws CannotReadException,
+			IOException {
+		// skip id3v2 tag
+		long start = 0;
+		byte[] id3 = new byte[10];
+		raf.seek(0);
+		if (raf.read(id3) == 10 && new String(id3, 0, 3).equals("ID3"))
+			start = 10 + ((id3[6] & 0xFF) << 21) + ((id3[7] & 0xFF) << 14)
+					+ ((id3[8] & 0xFF) << 7) + (id3[9] & 0xFF);
+
+		long frameOffset = scanner.find(raf.getChannel(), start);
+		if (frameOffset == -1)
+			throw new CannotReadException(
+					"Error: could not synchronize to first mp3 frame");
+
+		byte[] header = new byte[4];
+		raf.seek(frameOffset);
+		raf.readFully(header);
+		MPEGFrame frame = new MPEGFrame(header);
+		if (frame.getSamplingRate() == 0)
+			throw new CannotReadException(
+					"Error: could not synchronize to first mp3 frame");
+
+		double frameDuration = ((double) frame.getSampleNumber())
+				/ frame.getSamplingRate();
+		int frameLength = frame.getFrameLength();
+
+		// Xing header, after the side information
+		byte[] xingBytes = new byte[120];
+		raf.seek(frameOffset + 4 + sideInformationLength(frame));
+		raf.read(xingBytes);
+		XingMPEGFrame xing = new XingMPEGFrame(xingBytes);
+		if (xing.isValid() && xing.getToc() != null
+				&& xing.getFrameCount() > 0) {
+			long bytes = xing.getFileSize() > 0 ? xing.getFileSize() : raf
+					.length()
+					- frameOffset;
+			int[] toc = xing.getToc();
+			long[] offsets = new long[toc.length + 1];
+			for (int i = 0; i < toc.length; i++)
+				offsets[i] = frameOffset + toc[i] * bytes / 256;
+			offsets[toc.length] = frameOffset + bytes;
+
+			return new Mp3SeekTable(frameDuration * xing.getFrameCount()
+					/ toc.length, offsets, false);
+		}
+
+		// VBRI header, always 32 bytes after the frame header
+		byte[] vbriHeader = new byte[VBRIMPEGFrame.HEADER_SIZE];
+		raf.seek(frameOffset + 4 + 32);
+		raf.read(vbriHeader);
+		if (new String(vbriHeader, 0, 4).equals("VBRI")) {
+			byte[] vbriBytes = new byte[VBRIMPEGFrame.HEADER_SIZE
+					+ VBRIMPEGFrame.getTocLength(vbriHeader)];
+			System.arraycopy(vbriHeader, 0, vbriBytes, 0, vbriHeader.length);
+			raf.read(vbriBytes, vbriHeader.length, vbriBytes.length
+					- vbriHeader.length);
+
+			VBRIMPEGFrame vbri = new VBRIMPEGFrame(vbriBytes);
+			long[] toc = vbri.getToc();
+			if (toc != null && toc.length > 0 && vbri.getFramesPerEntry() > 0) {
+				long[] offsets = new long[toc.length + 1];
+				offsets[0] = frameOffset + frameLength;
+				for (int i = 0; i < toc.length; i++)
+					offsets[i + 1] = offsets[i] + toc[i];
+
+				return new Mp3SeekTable(frameDuration
+						* vbri.getFramesPerEntry(), offsets, true);
+			}
+		}
+
+		// No table of contents, walk the frames (the Xing frame holds no audio)
+		MPEGFrameWalker walker = new MPEGFrameWalker();
+		walker.setSeekInterval(SCAN_INTERVAL);
+		walker.walk(raf.getChannel(), xing.isValid() ? frameOffset
+				+ frameLength : frameOffset, raf.length());
+		long[] offsets = walker.getSeekOffsets();
+		if (offsets.length == 0)
+			throw new CannotReadException("No MPEG frame could be walked");
+
+		return new Mp3SeekTable(frameDuration * SCAN_INTERVAL, offsets, true);
+	}
+
+	/**
+	 * Returns the length of the layer III side information following the
+	 * frame header, where the Xing header begins.
+	 */
+	private int sideInformationLength(MPEGFrame frame) {
+		boolean mono = frame.getChannelMode() == MPEGFrame.CHANNEL_MODE_MONO;
+		if (frame.getMPEGVersion() == MPEGFrame.MPEG_VERSION_1)
+			return mono ? 17 : 32;
+		return mono ? 9 : 17;
+	}
+}
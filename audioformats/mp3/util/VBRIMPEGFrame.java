@@ -30,20 +30,78 @@ public class VBRIMPEGFrame implements VbrInfoFrame {
 	private boolean isValidVBRIMPEGFrame = true;
 
 
+	/**  The size of the VBRI data before the table of contents */
+	public final static int HEADER_SIZE = 26;
+
+	/**  The number of frames covered by each entry of the table of contents */
+	private int framesPerEntry = 0;
+
+	/**  The table of contents, entry i is the size in bytes of the i-th group of frames */
+	private long[] toc = null;
+
+	/**
+	 *  Creates a VBRI frame from the VBRI data, which can be followed by the
+	 *  table of contents
+	 *
+	 * @param  bytes  the array of bytes starting with the "VBRI" mark, at least 18 bytes long
+	 */
 	public VBRIMPEGFrame(byte[] bytes) {
 		String vbri = new String( bytes, 0, 4 );
 		if ( vbri.equals( "VBRI" )) {
-			int offset = 4+6;
-			fileSize = (bytes[offset] << 24)&0xFF000000 | (bytes[offset] << 16)&0x00FF0000 | (bytes[offset] << 8)&0x0000FF00 | bytes[offset]&0x000000FF;
+			int offset = 4+6;
+			fileSize = (int) readInt( bytes, offset, 4 );
 			
-			offset += 4;
-			frameCount = (bytes[offset] << 24)&0xFF000000 | (bytes[offset] << 16)&0x00FF0000 | (bytes[offset] << 8)&0x0000FF00 | bytes[offset]&0x000000FF;
+			offset += 4;
+			frameCount = (int) readInt( bytes, offset, 4 );
+			
+			if ( bytes.length >= HEADER_SIZE ) {
+				int entries = (int) readInt( bytes, 18, 2 );
+				int scale = (int) readInt( bytes, 20, 2 );
+				int entrySize = (int) readInt( bytes, 22, 2 );
+				framesPerEntry = (int) readInt( bytes, 24, 2 );
+				
+				if ( entrySize >= 1 && entrySize <= 4 && bytes.length >= HEADER_SIZE + entries * entrySize ) {
+					toc = new long[entries];
+					for ( int i = 0; i < entries; i++ )
+						toc[i] = readInt( bytes, HEADER_SIZE + i * entrySize, entrySize ) * scale;
+				}
+			}
 		}
 		else
 			//No frame VBR MP3 XING
 			isValidVBRIMPEGFrame = false;
 
 	}
+	
+	/**
+	 *  Returns the length of the table of contents following the given VBRI data
+	 *
+	 * @param  header  the first HEADER_SIZE bytes of the VBRI data
+	 * @return    the length in bytes of the table of contents
+	 */
+	public static int getTocLength(byte[] header) {
+		return (int) ( readInt( header, 18, 2 ) * readInt( header, 22, 2 ) );
+	}
+	
+	private static long readInt(byte[] b, int offset, int length) {
+		long value = 0;
+		for ( int i = 0; i < length; i++ )
+			value = value << 8 | (b[offset + i] & 0xFF);
+		return value;
+	}
+
+	public int getFramesPerEntry() {
+		return framesPerEntry;
+	}
+
+	/**
+	 *  Gets the table of contents, present when the constructor was given it
+	 *
+	 * @return    The size in bytes of each group of getFramesPerEntry() frames, or null
+	 */
+	public long[] getToc() {
+		return toc;
+	}
 
 	public int getFrameCount() {
 		return frameCount;
@@ -44,6 +44,12 @@ public class XingMPEGFrame implements VbrInfoFrame {
 	private boolean[] vbrFlags = new boolean[4];
 	
 	private boolean vbr = false;
+	
+	/**  The number of entries of the table of contents */
+	public final static int TOC_SIZE = 100;
+
+	/**  The table of contents, entry i is the position in the file (scaled to 0-255) at i% of the duration */
+	private int[] toc = null;
 
 
 	/**
@@ -58,16 +64,53 @@ public class XingMPEGFrame implements VbrInfoFrame {
 		if ( xing.equals( "Xing" ) || xing.equals( "Info" ) ) {
 		    vbr = xing.equals( "Xing" );
 			int[] b = u(bytesPart1);
-			int[] q = u(bytesPart2);
 
 			updateVBRFlags(b[7]);
 
 			if ( vbrFlags[0] )
-				frameCount = b[8] * 16777215 + b[9] * 65535 + b[10] * 255 + b[11];
+				frameCount = int32( b, 8 );
 			if ( vbrFlags[1] )
-				fileSize = b[12] * 16777215 + b[13] * 65535 + b[14] * 255 + b[15];
+				fileSize = int32( b, 12 );
+			if ( vbrFlags[3] )
+				quality = int32( u(bytesPart2), 0 );
+		}
+		else
+			//No frame VBR MP3 XING
+			isValidXingMPEGFrame = false;
+
+	}
+	
+	/**
+	 *  Creates a Xing Frame from the whole Xing data (up to 120 bytes), the
+	 *  optional parts being located with the flags
+	 *
+	 * @param  bytes  the array of bytes starting with the "Xing" or "Info" mark
+	 */
+	public XingMPEGFrame( byte[] bytes ) {
+		String xing = new String( bytes, 0, 4 );
+
+		if ( xing.equals( "Xing" ) || xing.equals( "Info" ) ) {
+		    vbr = xing.equals( "Xing" );
+			int[] b = u(bytes);
+
+			updateVBRFlags(b[7]);
+
+			int offset = 8;
+			if ( vbrFlags[0] ) {
+				frameCount = int32( b, offset );
+				offset += 4;
+			}
+			if ( vbrFlags[1] ) {
+				fileSize = int32( b, offset );
+				offset += 4;
+			}
+			if ( vbrFlags[2] ) {
+				toc = new int[TOC_SIZE];
+				System.arraycopy( b, offset, toc, 0, TOC_SIZE );
+				offset += TOC_SIZE;
+			}
 			if ( vbrFlags[3] )
-				quality = q[0] * 16777215 + q[1] * 65535 + q[2] * 255 + q[3];
+				quality = int32( b, offset );
 		}
 		else
 			//No frame VBR MP3 XING
@@ -75,6 +118,10 @@ public class XingMPEGFrame implements VbrInfoFrame {
 
 	}
 	
+	private int int32(int[] b, int offset) {
+		return b[offset] << 24 | b[offset + 1] << 16 | b[offset + 2] << 8 | b[offset + 3];
+	}
+	
 	private int[] u(byte[] b) {
 		int[] i = new int[b.length];
 		for(int j = 0; j<i.length; j++)
@@ -105,6 +152,16 @@ public class XingMPEGFrame implements VbrInfoFrame {
 		return isValidXingMPEGFrame;
 	}
 
+	/**
+	 *  Gets the table of contents, only read by the constructor taking the whole
+	 *  Xing data
+	 *
+	 * @return    The 100 positions in the file (0-255) at each percent of the duration, or null
+	 */
+	public int[] getToc() {
+		return toc;
+	}
+
 	public boolean isVbr() {
 	    return vbr;
 	}
@@ -18,14 +18,22 @@
  */
 package entagged.audioformats.mp3.util.id3frames;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 
+import entagged.audioformats.generic.FileRegion;
 import entagged.audioformats.generic.TagField;
 
 public class ApicId3Frame extends TextId3Frame {
 
 	private byte[] data;
 
+	/**
+	 * The location of the picture data in the file, when it has not been
+	 * loaded (then {@link #data} is <code>null</code>).
+	 */
+	private FileRegion picture;
+
 	private String mime;
 
 	private byte pictureType;
@@ -37,6 +45,27 @@ public class ApicId3Frame extends TextId3Frame {
 		super("APIC", rawContent, version);
 	}
 
+	/**
+	 * Creates a frame whose picture data is left in the file, and only loaded
+	 * by {@link #getData()}.
+	 * 
+	 * @param rawHeader
+	 *            The beginning of the frame content, up to at least the first
+	 *            byte of the picture data.
+	 * @param picture
+	 *            The location of the picture data.
+	 * @param version
+	 *            The ID3V2 version of the content.
+	 * @throws UnsupportedEncodingException
+	 *             If the description encoding is not supported.
+	 */
+	public ApicId3Frame(byte[] rawHeader, FileRegion picture, byte version)
+			throws UnsupportedEncodingException {
+		super("APIC", rawHeader, version);
+		this.data = null;
+		this.picture = picture;
+	}
+
 	public ApicId3Frame(String description, String mime, byte pictureType,
 			byte[] data) {
 		super("APIC", description);
@@ -50,6 +79,8 @@ public class ApicId3Frame extends TextId3Frame {
 		if (unsupportedState) {
 			return this.data;
 		}
+		// Load the picture now, the file may change once the tag is written
+		byte[] data = getData();
 		byte[] contentB = getBytes(this.content, getEncoding());
 		byte[] mimeB = getBytes(this.mime, "ISO-8859-1");
 
@@ -88,7 +119,8 @@ public class ApicId3Frame extends TextId3Frame {
 			if (!((ApicId3Frame) field).unsupportedState) {
 				this.mime = ((ApicId3Frame) field).getMimeType();
 				this.pictureType = ((ApicId3Frame) field).getPictureType();
-				this.data = ((ApicId3Frame) field).getData();
+				this.data = ((ApicId3Frame) field).data;
+				this.picture = ((ApicId3Frame) field).picture;
 			} else {
 				this.data = ((ApicId3Frame) field).data;
 				this.unsupportedState = true;
@@ -96,10 +128,47 @@ public class ApicId3Frame extends TextId3Frame {
 		}
 	}
 
+	/**
+	 * Returns the picture data, loading it from the file if needed.<br>
+	 * 
+	 * @return The picture data.
+	 * @throws IllegalStateException
+	 *             If the picture data could not be loaded from the file.
+	 */
 	public byte[] getData() {
+		if (data == null) {
+			try {
+				data = picture.read();
+				picture = null;
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot load the picture "
+						+ picture, e);
+			}
+		}
 		return data;
 	}
 
+	/**
+	 * Returns the location of the picture data in the file, if it has not
+	 * been loaded yet. It can be used to stream the picture without loading
+	 * it.
+	 * 
+	 * @return The location of the picture, or <code>null</code> if it is in
+	 *         memory ({@link #getData()}).
+	 */
+	public FileRegion getPictureRegion() {
+		return picture;
+	}
+
+	/**
+	 * Returns the length of the picture data, without loading it.
+	 * 
+	 * @return The length of the picture data.
+	 */
+	public long getDataLength() {
+		return data == null ? picture.getLength() : data.length;
+	}
+
 	public String getMimeType() {
 		return mime;
 	}
@@ -162,7 +231,7 @@ public class ApicId3Frame extends TextId3Frame {
 	}
 
 	public boolean isEmpty() {
-		return super.isEmpty() && data.length == 0 && mime.equals("");
+		return super.isEmpty() && getDataLength() == 0 && mime.equals("");
 	}
 
 	/*
@@ -19,12 +19,12 @@
 package entagged.audioformats.mp4;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 import entagged.audioformats.EncodingInfo;
 import entagged.audioformats.Tag;
 import entagged.audioformats.exceptions.CannotReadException;
 import entagged.audioformats.generic.AudioFileReader;
+import entagged.audioformats.generic.FileReadWindow;
 import entagged.audioformats.mp4.util.Mp4InfoReader;
 import entagged.audioformats.mp4.util.Mp4TagReader;
 
@@ -32,11 +32,11 @@ public class Mp4FileReader extends AudioFileReader {
     private Mp4InfoReader ir = new Mp4InfoReader();
 	private Mp4TagReader tr = new Mp4TagReader();
 	
-	protected EncodingInfo getEncodingInfo( RandomAccessFile raf )  throws CannotReadException, IOException {
+	protected EncodingInfo getEncodingInfo( FileReadWindow raf )  throws CannotReadException, IOException {
 		return ir.read(raf);
 	}
 	
-	protected Tag getTag( RandomAccessFile raf )  throws CannotReadException, IOException {
+	protected Tag getTag( FileReadWindow raf )  throws CannotReadException, IOException {
 		return tr.read(raf);
 	}
 }
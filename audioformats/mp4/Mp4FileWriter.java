@@ -27,15 +27,14 @@ import entagged.audioformats.generic.AudioFileWriter;
 import entagged.audioformats.mp4.util.Mp4TagWriter;
 
 public class Mp4FileWriter extends AudioFileWriter {
-	
-    private Mp4TagWriter tw = new Mp4TagWriter();
-
 
+	// Mp4TagWriter keeps the state of the current write in its fields, so a
+	// new one is used for each file.
 	protected void writeTag(Tag tag, RandomAccessFile raf, RandomAccessFile rafTemp) throws CannotWriteException, IOException {
-	    tw.write(tag, raf, rafTemp); 
+	    new Mp4TagWriter().write(tag, raf, rafTemp); 
 	}
 	
 	protected void deleteTag(RandomAccessFile raf, RandomAccessFile rafTemp) throws IOException {
-	    tw.delete(raf, rafTemp);
+	    new Mp4TagWriter().delete(raf, rafTemp);
 	}
 }
@@ -24,9 +24,10 @@ import java.io.RandomAccessFile;
 
 import entagged.audioformats.EncodingInfo;
 import entagged.audioformats.exceptions.CannotReadException;
+import entagged.audioformats.generic.FileReadWindow;
 
 public class Mp4InfoReader {
-    public EncodingInfo read( RandomAccessFile raf ) throws CannotReadException, IOException {
+    public EncodingInfo read( FileReadWindow raf ) throws CannotReadException, IOException {
         EncodingInfo info = new EncodingInfo();
         
         Mp4Box box = new Mp4Box();
@@ -48,7 +49,7 @@ public class Mp4InfoReader {
         return info;
     }
     
-    private void seek(RandomAccessFile raf, Mp4Box box, String id) throws IOException {
+    private void seek(FileReadWindow raf, Mp4Box box, String id) throws IOException {
         byte[] b = new byte[8];
         raf.read(b);
         box.update(b);
@@ -60,6 +61,6 @@ public class Mp4InfoReader {
     }
     
     public static void main(String[] args) throws Exception {
-        new Mp4InfoReader().read(new RandomAccessFile(new File("/home/kikidonk/test.mp4"), "r"));
+        new Mp4InfoReader().read(new FileReadWindow(new RandomAccessFile(new File("/home/kikidonk/test.mp4"), "r")));
     }
 }
@@ -24,6 +24,7 @@ import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 
 import entagged.audioformats.exceptions.CannotReadException;
+import entagged.audioformats.generic.FileReadWindow;
 import entagged.audioformats.mp4.Mp4Tag;
 
 public class Mp4TagReader {
@@ -38,7 +39,7 @@ public class Mp4TagReader {
      *       data
      *      ]
      */
-    public Mp4Tag read( RandomAccessFile raf ) throws CannotReadException, IOException {
+    public Mp4Tag read( FileReadWindow raf ) throws CannotReadException, IOException {
         Mp4Tag tag = new Mp4Tag();
 
         Mp4Box box = new Mp4Box();
@@ -104,7 +105,7 @@ public class Mp4TagReader {
         return new Mp4TagBinaryField(id, raw);
     }
     
-    private void seek(RandomAccessFile raf, Mp4Box box, String id) throws IOException {
+    private void seek(FileReadWindow raf, Mp4Box box, String id) throws IOException {
         byte[] b = new byte[8];
         raf.read(b);
         box.update(b);
@@ -116,6 +117,6 @@ public class Mp4TagReader {
     }
     
     public static void main(String[] args) throws Exception {
-        new Mp4TagReader().read(new RandomAccessFile(new File("/home/kikidonk/test.mp4"), "r"));
+        new Mp4TagReader().read(new FileReadWindow(new RandomAccessFile(new File("/home/kikidonk/test.mp4"), "r")));
     }
 }
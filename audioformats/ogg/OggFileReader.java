@@ -22,6 +22,7 @@ import entagged.audioformats.*;
 import entagged.audioformats.ogg.util.*;
 import entagged.audioformats.exceptions.*;
 import entagged.audioformats.generic.AudioFileReader;
+import entagged.audioformats.generic.FileReadWindow;
 
 import java.io.*;
 
@@ -29,12 +30,44 @@ public class OggFileReader extends AudioFileReader {
 	private OggInfoReader ir = new OggInfoReader();
 	private VorbisTagReader otr = new VorbisTagReader();
 	
-	protected EncodingInfo getEncodingInfo( RandomAccessFile raf )  throws CannotReadException, IOException {
+	protected EncodingInfo getEncodingInfo( FileReadWindow raf )  throws CannotReadException, IOException {
 		return ir.read(raf);
 	}
 	
-	protected Tag getTag( RandomAccessFile raf )  throws CannotReadException, IOException {
+	protected Tag getTag( FileReadWindow raf )  throws CannotReadException, IOException {
 		return otr.read(raf);
 	}
+	
+	/*
+	 * Reads the codec infos from the 1st page and the tag from the 2nd one in a
+	 * row, then the length from the last page. The search of the last page is
+	 * skipped when only the tag is requested.
+	 */
+	protected AudioFile readAudioFile( File f, FileReadWindow raf, int options )  throws CannotReadException, IOException {
+		byte[] b = new byte[4];
+		raf.read(b);
+		raf.seek(0);
+		if( !new String(b).equals("OggS") )
+			return super.readAudioFile(f, raf, options);
+		
+		VorbisCodecHeader vorbisCodecHeader = ir.readCodecHeader(raf);
+		
+		Tag tag = null;
+		if( (options & READ_TAG) != 0 ) {
+			try {
+				tag = otr.readCommentPage(raf);
+			} catch (CannotReadException e) {
+				tag = getDefaultTag(e);
+			}
+		}
+		
+		EncodingInfo info = null;
+		if( (options & READ_INFO) != 0 ) {
+			double PCMSamplesNumber = ir.readPCMSamplesNumber(raf);
+			info = ir.createEncodingInfo(vorbisCodecHeader, PCMSamplesNumber, raf.length());
+		}
+		
+		return createAudioFile(f, info, tag, options);
+	}
 }
 
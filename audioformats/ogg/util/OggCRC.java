@@ -0,0 +1,195 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.ogg.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Computes the CRC of the Ogg pages (polynomial 0x04c11db7, initial value 0,
+ * no reflection nor final xor).<br>
+ * The data can be given in several parts with the update methods. Eight bytes
+ * are processed at a time with the "slicing-by-8" tables, and the buffers,
+ * heap, direct or mapped, are read in place without being copied.<br>
+ * An instance holds the running value, so it must only be used by one thread
+ * at a time. The tables are shared and built once.
+ */
+public class OggCRC {
+
+	/**
+	 * Offset of the checksum field in the page header, this field is taken as 0
+	 * when the CRC of a page is computed.
+	 */
+	public final static int CHECKSUM_OFFSET = 22;
+
+	/**
+	 * The tables, TABLES[k][i] being the CRC of the byte i followed by k zero
+	 * bytes.
+	 */
+	private final static int[][] TABLES = new int[8][256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			int r = i << 24;
+			for (int j = 0; j < 8; j++)
+				r = (r & 0x80000000) != 0 ? (r << 1) ^ 0x04c11db7 : r << 1;
+			TABLES[0][i] = r;
+		}
+		for (int k = 1; k < 8; k++)
+			for (int i = 0; i < 256; i++) {
+				int previous = TABLES[k - 1][i];
+				TABLES[k][i] = (previous << 8)
+						^ TABLES[0][previous >>> 24];
+			}
+	}
+
+	private int crc;
+
+	/**
+	 * Returns the CRC of the given page, computed with its checksum field as
+	 * 0. The page is read from the position to the limit of the buffer, whose
+	 * position is not changed.
+	 * 
+	 * @param page
+	 *            The whole page, header included
+	 * @return The CRC to store in the checksum field, in little endian.
+	 */
+	public static int getPageCRC(ByteBuffer page) {
+		OggCRC crc = new OggCRC();
+		crc.updatePage(page);
+		return crc.getValue();
+	}
+
+	/**
+	 * Same as {@link #getPageCRC(ByteBuffer)} for a page in an array.
+	 */
+	public static int getPageCRC(byte[] page, int offset, int length) {
+		OggCRC crc = new OggCRC();
+		crc.updatePage(page, offset, length);
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns the CRC of the data given since the creation or the last reset.
+	 */
+	public int getValue() {
+		return crc;
+	}
+
+	/**
+	 * Restarts the computation.
+	 */
+	public void reset() {
+		crc = 0;
+	}
+
+	/**
+	 * Adds one byte.
+	 */
+	public void update(int b) {
+		crc = (crc << 8) ^ TABLES[0][((crc >>> 24) ^ b) & 0xFF];
+	}
+
+	/**
+	 * Adds the given bytes of the array.
+	 */
+	public void update(byte[] b, int offset, int length) {
+		int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+		int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+		int c = crc;
+		int end = offset + length;
+		int i = offset;
+		for (; i <= end - 8; i += 8) {
+			c ^= (b[i] & 0xFF) << 24 | (b[i + 1] & 0xFF) << 16
+					| (b[i + 2] & 0xFF) << 8 | (b[i + 3] & 0xFF);
+			c = t7[c >>> 24] ^ t6[(c >>> 16) & 0xFF] ^ t5[(c >>> 8) & 0xFF]
+					^ t4[c & 0xFF] ^ t3[b[i + 4] & 0xFF]
+					^ t2[b[i + 5] & 0xFF] ^ t1[b[i + 6] & 0xFF]
+					^ t0[b[i + 7] & 0xFF];
+		}
+		for (; i < end; i++)
+			c = (c << 8) ^ t0[((c >>> 24) ^ b[i]) & 0xFF];
+		crc = c;
+	}
+
+	/**
+	 * Adds the bytes between the position and the limit of the buffer, and
+	 * moves its position to its limit. Buffers backed by an array are read
+	 * from the array, the others with absolute gets.
+	 */
+	public void update(ByteBuffer buf) {
+		int pos = buf.position();
+		int end = buf.limit();
+		if (buf.hasArray()) {
+			update(buf.array(), buf.arrayOffset() + pos, end - pos);
+			buf.position(end);
+			return;
+		}
+
+		int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+		int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+		int c = crc;
+		int i = pos;
+		for (; i <= end - 8; i += 8) {
+			c ^= (buf.get(i) & 0xFF) << 24 | (buf.get(i + 1) & 0xFF) << 16
+					| (buf.get(i + 2) & 0xFF) << 8 | (buf.get(i + 3) & 0xFF);
+			c = t7[c >>> 24] ^ t6[(c >>> 16) & 0xFF] ^ t5[(c >>> 8) & 0xFF]
+					^ t4[c & 0xFF] ^ t3[buf.get(i + 4) & 0xFF]
+					^ t2[buf.get(i + 5) & 0xFF] ^ t1[buf.get(i + 6) & 0xFF]
+					^ t0[buf.get(i + 7) & 0xFF];
+		}
+		for (; i < end; i++)
+			c = (c << 8) ^ t0[((c >>> 24) ^ buf.get(i)) & 0xFF];
+		crc = c;
+		buf.position(end);
+	}
+
+	/**
+	 * Adds a whole page, whose checksum field is taken as 0. The page is read
+	 * from the position to the limit of the buffer, whose position is not
+	 * changed.
+	 */
+	public void updatePage(ByteBuffer page) {
+		int pos = page.position();
+		int end = page.limit();
+
+		page.limit(pos + CHECKSUM_OFFSET);
+		update(page);
+		update(0);
+		update(0);
+		update(0);
+		update(0);
+		page.limit(end);
+		page.position(pos + CHECKSUM_OFFSET + 4);
+		update(page);
+		page.position(pos);
+	}
+
+	/**
+	 * Same as {@link #updatePage(ByteBuffer)} for a page in an array.
+	 */
+	public void updatePage(byte[] page, int offset, int length) {
+		update(page, offset, CHECKSUM_OFFSET);
+		update(0);
+		update(0);
+		update(0);
+		update(0);
+		update(page, offset + CHECKSUM_OFFSET + 4, length - CHECKSUM_OFFSET
+				- 4);
+	}
+}
@@ -27,58 +27,35 @@ package entagged.audioformats.ogg.util;
  */
 public class OggCRCFactory {
 
-	private static long[] crc_lookup = new long[256];
-	private static boolean init = false;
-
-
+	/**
+	 * Does nothing, the tables of {@link OggCRC} are built when the class is
+	 * loaded.
+	 */
 	public static void init() {
-		for ( int i = 0; i < 256; i++ ) {
-			long r = i << 24;
-
-			for ( int j = 0; j < 8; j++ )
-				if ( ( r & 0x80000000L ) != 0 )
-					r = ( r << 1 ) ^ 0x04c11db7L;
-				else
-					r <<= 1;
-
-			crc_lookup[i] = ( r & 0xffffffff );
-		}
-		init = true;
 	}
 
 
 	public boolean checkCRC( byte[] data, byte[] crc ) {
-		return new String( crc ).equals( new String( computeCRC( data ) ) );
+		byte[] sum = computeCRC( data );
+		return crc.length == 4 && sum[0] == crc[0] && sum[1] == crc[1] && sum[2] == crc[2] && sum[3] == crc[3];
 	}
 
+	/**
+	 * Returns the CRC of the data, in little endian as stored in the page
+	 * header. See {@link OggCRC} to checksum buffers or several parts.
+	 */
 	public static byte[] computeCRC( byte[] data ) {
-		//System.err.println(data.length);
-		
-		if(!init)
-			init();
-		
-		long crc_reg = 0;
-
-		for ( int i = 0; i < data.length; i++ ) {
-			int tmp = (int) ( ( ( crc_reg >>> 24 ) & 0xff ) ^ u( data[i] ) );
-
-			crc_reg = ( crc_reg << 8 ) ^ crc_lookup[tmp];
-			crc_reg &= 0xffffffff;
-		}
+		OggCRC crc = new OggCRC();
+		crc.update( data, 0, data.length );
+		int crc_reg = crc.getValue();
 
 		byte[] sum = new byte[4];
 
-		sum[0] = (byte) ( crc_reg & 0xffL );
-		sum[1] = (byte) ( ( crc_reg >>> 8 ) & 0xffL );
-		sum[2] = (byte) ( ( crc_reg >>> 16 ) & 0xffL );
-		sum[3] = (byte) ( ( crc_reg >>> 24 ) & 0xffL );
+		sum[0] = (byte) crc_reg;
+		sum[1] = (byte) ( crc_reg >>> 8 );
+		sum[2] = (byte) ( crc_reg >>> 16 );
+		sum[3] = (byte) ( crc_reg >>> 24 );
 
 		return sum;
 	}
-
-
-	private static int u( int n ) {
-		return n & 0xff ;
-	}
 }
-
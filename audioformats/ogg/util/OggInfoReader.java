@@ -21,57 +21,146 @@ package entagged.audioformats.ogg.util;
 
 import entagged.audioformats.EncodingInfo;
 import entagged.audioformats.exceptions.*;
+import entagged.audioformats.generic.FileReadWindow;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 public class OggInfoReader {
-	public EncodingInfo read( RandomAccessFile raf )  throws CannotReadException, IOException {
-		EncodingInfo info = new EncodingInfo();
+	public EncodingInfo read( FileReadWindow raf )  throws CannotReadException, IOException {
+		double PCMSamplesNumber = readPCMSamplesNumber(raf);
 		
-		long oldPos = 0;
+		raf.seek(0);
+		VorbisCodecHeader vorbisCodecHeader = readCodecHeader(raf);
 		
-		//Reads the file encoding infos -----------------------------------
-		raf.seek( 0 );
-		double PCMSamplesNumber = -1;
-		raf.seek( raf.length()-2);
-		while(raf.getFilePointer() >= 4) {
-			if(raf.read()==0x53) {
-				raf.seek( raf.getFilePointer() - 4);
-				byte[] ogg = new byte[3];
-				raf.readFully(ogg);
-				if(ogg[0]==0x4F && ogg[1]==0x67 && ogg[2]==0x67) {
-					raf.seek( raf.getFilePointer() - 3);
-					
-					oldPos = raf.getFilePointer();
-					raf.seek(raf.getFilePointer() + 26);
-					int pageSegments = raf.readByte()&0xFF; //Unsigned
-					raf.seek( oldPos );
-					
-					byte[] b = new byte[27 + pageSegments];
-					raf.readFully( b );
-
-					OggPageHeader pageHeader = new OggPageHeader( b );
-					raf.seek(0);
-					PCMSamplesNumber = pageHeader.getAbsoluteGranulePosition();
-					break;
-				}
-			}	
-			raf.seek( raf.getFilePointer() - 2);
-		}
+		return createEncodingInfo(vorbisCodecHeader, PCMSamplesNumber, raf.length());
+	}
+	
+	/*
+	 * Size of the blocks read backwards from the end of the file when searching
+	 * the last page.
+	 */
+	private final static int BLOCK_SIZE = 64 * 1024;
+	
+	/*
+	 * Returns the number of PCM samples of the stream, which is the granule
+	 * position of the last page of the file.
+	 */
+	public double readPCMSamplesNumber( FileReadWindow raf )  throws CannotReadException, IOException {
+		OggPageHeaderView lastPage = new OggPageHeaderView();
+		if( !findLastPage( raf.getChannel(), raf.length(), lastPage ) )
+			throw new CannotReadException("Error: Could not find the Ogg Setup block");
 		
-		if(PCMSamplesNumber == -1){
+		return lastPage.getGranulePosition();
+	}
+	
+	/*
+	 * Searches the last page of the file and places the view on its header.
+	 * The file is read backwards by blocks which are scanned in memory for the
+	 * capture pattern, so a single read is usually enough. A page is only
+	 * accepted if its CRC is valid, which skips the "OggS" found in trailing
+	 * junk or in a damaged last page. If no page is valid, the last one with a
+	 * complete header is used.
+	 * The channel is read with positional reads, its position is not changed.
+	 */
+	private boolean findLastPage( FileChannel fc, long size, OggPageHeaderView view ) throws IOException {
+		ByteBuffer block = ByteBuffer.allocate( (int) Math.min( BLOCK_SIZE, size ) );
+		byte[] b = block.array();
+		ByteBuffer page = null;
+		ByteBuffer fallback = null;
 		
-			throw new CannotReadException("Error: Could not find the Ogg Setup block");
+		long end = size;
+		while( end >= 4 ) {
+			long start = Math.max( 0, end - b.length );
+			block.clear();
+			block.limit( (int) (end - start) );
+			read( fc, block, start );
+			int n = block.position();
+			
+			for( int i = n - 4; i >= 0; i-- ) {
+				if( b[i] != 0x4F || b[i+1] != 0x67 || b[i+2] != 0x67 || b[i+3] != 0x53 )
+					continue;
+				
+				long offset = start + i;
+				if( offset + OggPageHeaderView.FIXED_SIZE > size )
+					continue;
+				
+				// The header, then the whole page to check the CRC, from the block
+				// when they are in it, otherwise read apart
+				ByteBuffer in = block;
+				int at = i;
+				int available = n;
+				if( i + OggPageHeaderView.FIXED_SIZE > n || i + OggPageHeaderView.FIXED_SIZE + (b[i+26] & 0xFF) > n ) {
+					page = read( fc, page, offset, OggPageValidator.MAX_PAGE_SIZE );
+					in = page;
+					at = 0;
+					available = page.position();
+				}
+				if( !view.wrap( in, at ) || at + view.getHeaderLength() > available )
+					continue;
+				
+				int length = view.getTotalLength();
+				if( offset + length <= size ) {
+					if( at + length > available ) {
+						page = read( fc, page, offset, length );
+						in = page;
+						at = 0;
+						view.wrap( page, 0 );
+					}
+					if( view.isChecksumValid() )
+						return true;
+				}
+				if( fallback == null ) {
+					// Copied, as the view moves on
+					fallback = ByteBuffer.allocate( view.getHeaderLength() );
+					for( int j = 0; j < fallback.capacity(); j++ )
+						fallback.put( j, in.get( at + j ) );
+				}
+			}
+			if( start == 0 )
+				break;
+			// The 3 first bytes can end a capture pattern starting in the next block
+			end = start + 3;
 		}
-		
-
+		return fallback != null && view.wrap( fallback, 0 );
+	}
+	
+	/*
+	 * Reads from the given offset until the buffer is full or the end of the
+	 * file is reached.
+	 */
+	private void read( FileChannel fc, ByteBuffer buf, long offset ) throws IOException {
+		while( buf.hasRemaining() )
+			if( fc.read( buf, offset + buf.position() ) == -1 )
+				break;
+	}
+	
+	/*
+	 * Reads the given length from the offset into the page buffer, which is
+	 * allocated the first time, and returns it.
+	 */
+	private ByteBuffer read( FileChannel fc, ByteBuffer page, long offset, int length ) throws IOException {
+		if( page == null )
+			page = ByteBuffer.allocate( OggPageValidator.MAX_PAGE_SIZE );
+		page.clear();
+		page.limit( length );
+		read( fc, page, offset );
+		return page;
+	}
+	
+	/*
+	 * Reads the codec infos from the first page, the window must point at its
+	 * beginning. The window then points at the beginning of the second page.
+	 */
+	public VorbisCodecHeader readCodecHeader( FileReadWindow raf )  throws IOException {
 		//Supposing 1st page = codec infos
 		//			2nd page = comment+decode info
 		//...Extracting 1st page
 		byte[] b = new byte[4];
 		
-		oldPos = raf.getFilePointer();
-		raf.seek(26);
+		long oldPos = raf.getFilePointer();
+		raf.seek(oldPos + 26);
 		int pageSegments = raf.read()&0xFF; //Unsigned
 		raf.seek( oldPos );
 
@@ -84,8 +173,15 @@ public class OggInfoReader {
 
 		raf.read( vorbisData );
 
-		VorbisCodecHeader vorbisCodecHeader = new VorbisCodecHeader( vorbisData );
-
+		return new VorbisCodecHeader( vorbisData );
+	}
+	
+	/*
+	 * Creates the encoding infos from the codec infos and the number of samples.
+	 */
+	public EncodingInfo createEncodingInfo( VorbisCodecHeader vorbisCodecHeader, double PCMSamplesNumber, long fileLength ) {
+		EncodingInfo info = new EncodingInfo();
+		
 		//Populates encodingInfo----------------------------------------------------
 		info.setPreciseLength( (float) (PCMSamplesNumber / vorbisCodecHeader.getSamplingRate()));
 		info.setChannelNumber( vorbisCodecHeader.getChannelNumber() );
@@ -108,7 +204,7 @@ public class OggInfoReader {
 		    info.setVbr(true);
 		}
 		else {
-			info.setBitrate( computeBitrate( info.getLength(), raf.length() ) );
+			info.setBitrate( computeBitrate( info.getLength(), fileLength ) );
 			info.setVbr(true);
 		}
 		
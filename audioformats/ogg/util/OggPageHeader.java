@@ -27,7 +27,7 @@ package entagged.audioformats.ogg.util;
  * @version    16 d�cembre 2003
  */
 public class OggPageHeader {
-	private double absoluteGranulePosition;
+	private long absoluteGranulePosition;
 	private byte[] checksum;
 	private byte headerTypeFlag;
 
@@ -43,9 +43,7 @@ public class OggPageHeader {
 		headerTypeFlag = b[5];
 		//System.err.println("headerTypeFlag: " + headerTypeFlag);
 		if ( streamStructureRevision == 0 ) {
-			this.absoluteGranulePosition = 0;  //b[6] + (b[7]<<8) + (b[8]<<16) + (b[9]<<24) + (b[10]<<32) + (b[11]<<40) + (b[12]<<48) + (b[13]<<56);
-			for ( int i = 0; i < 8; i++ )
-				this.absoluteGranulePosition += u( b[i + 6] ) * Math.pow( 2, 8 * i );
+			this.absoluteGranulePosition = OggPageHeaderView.getGranulePosition( b, 0 );
 
 			streamSerialNumber = u(b[14]) + ( u(b[15]) << 8 ) + ( u(b[16]) << 16 ) + ( u(b[17]) << 24 );
 			//System.err.println("streamSerialNumber: " + streamSerialNumber);
@@ -75,8 +73,21 @@ public class OggPageHeader {
 	}
 
 
+	/*
+	 * Returns the granule position read as an unsigned number, -1 (no packet
+	 * ends in the page) being returned as 2^64-1.
+	 */
 	public double getAbsoluteGranulePosition() {
 		//System.err.println("Number Of Samples: "+absoluteGranulePosition);
+		if ( absoluteGranulePosition >= 0 )
+			return this.absoluteGranulePosition;
+		return ( absoluteGranulePosition >>> 1 ) * 2.0 + ( absoluteGranulePosition & 1 );
+	}
+
+	/*
+	 * Returns the granule position, -1 if no packet ends in the page.
+	 */
+	public long getGranulePosition() {
 		return this.absoluteGranulePosition;
 	}
 
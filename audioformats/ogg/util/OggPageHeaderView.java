@@ -0,0 +1,230 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.ogg.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A view over an Ogg page header held in a ByteBuffer. The fields are decoded
+ * from the buffer when they are asked for, and can be modified in place, so
+ * one view can be moved from page to page while walking a file without
+ * allocating anything. A view must only be used by one thread at a time.<br>
+ * Unlike {@link OggPageHeader}, the granule position is a <code>long</code>,
+ * -1 meaning that no packet ends in the page.
+ */
+public class OggPageHeaderView {
+
+	/**
+	 * Size of the header without its segment table.
+	 */
+	public final static int FIXED_SIZE = 27;
+
+	/**
+	 * Header type flag, the page continues a packet of the previous page.
+	 */
+	public final static int CONTINUED = 0x01;
+
+	/**
+	 * Header type flag, the page is the first of its logical stream.
+	 */
+	public final static int FIRST_PAGE = 0x02;
+
+	/**
+	 * Header type flag, the page is the last of its logical stream.
+	 */
+	public final static int LAST_PAGE = 0x04;
+
+	private final OggCRC crc = new OggCRC();
+
+	private ByteBuffer buf;
+
+	private int offset;
+
+	/**
+	 * Places the view on the header starting at the given index of the
+	 * buffer.
+	 * 
+	 * @param buf
+	 *            The buffer, whose position and limit are not used
+	 * @param offset
+	 *            The absolute index of the capture pattern in the buffer
+	 * @return <code>true</code> if a header of version 0 starts there. Its
+	 *         segment table, {@link #getHeaderLength()} bytes from the
+	 *         offset, must then be in the buffer to use the other methods.
+	 */
+	public boolean wrap(ByteBuffer buf, int offset) {
+		this.buf = buf;
+		this.offset = offset;
+		return offset + FIXED_SIZE <= buf.capacity()
+				&& buf.get(offset) == 'O' && buf.get(offset + 1) == 'g'
+				&& buf.get(offset + 2) == 'g' && buf.get(offset + 3) == 'S'
+				&& buf.get(offset + 4) == 0;
+	}
+
+	/**
+	 * Returns the index of the header in the buffer.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getHeaderType() {
+		return buf.get(offset + 5) & 0xFF;
+	}
+
+	public long getGranulePosition() {
+		return getGranulePosition(buf, offset);
+	}
+
+	public void setGranulePosition(long granule) {
+		for (int i = 0; i < 8; i++)
+			buf.put(offset + 6 + i, (byte) (granule >>> (8 * i)));
+	}
+
+	public int getSerialNumber() {
+		return getInt(buf, offset + 14);
+	}
+
+	public int getPageSequence() {
+		return getInt(buf, offset + 18);
+	}
+
+	public void setPageSequence(int sequence) {
+		putInt(buf, offset + 18, sequence);
+	}
+
+	public int getChecksum() {
+		return getInt(buf, offset + OggCRC.CHECKSUM_OFFSET);
+	}
+
+	public void setChecksum(int checksum) {
+		putInt(buf, offset + OggCRC.CHECKSUM_OFFSET, checksum);
+	}
+
+	/**
+	 * Returns the number of entries of the segment table.
+	 */
+	public int getSegmentCount() {
+		return buf.get(offset + 26) & 0xFF;
+	}
+
+	/**
+	 * Returns the length of the given entry of the segment table.
+	 */
+	public int getSegment(int i) {
+		return buf.get(offset + FIXED_SIZE + i) & 0xFF;
+	}
+
+	/**
+	 * Returns the size of the header, segment table included.
+	 */
+	public int getHeaderLength() {
+		return FIXED_SIZE + getSegmentCount();
+	}
+
+	/**
+	 * Returns the size of the data of the page, without the header.
+	 */
+	public int getPageLength() {
+		int length = 0;
+		int end = offset + getHeaderLength();
+		for (int i = offset + FIXED_SIZE; i < end; i++)
+			length += buf.get(i) & 0xFF;
+		return length;
+	}
+
+	/**
+	 * Returns the size of the page, header included.
+	 */
+	public int getTotalLength() {
+		return getHeaderLength() + getPageLength();
+	}
+
+	/**
+	 * Computes the CRC of the page, which must be entirely in the buffer.
+	 */
+	public int computeChecksum() {
+		int length = getTotalLength();
+		crc.reset();
+		if (buf.hasArray()) {
+			crc.updatePage(buf.array(), buf.arrayOffset() + offset, length);
+			return crc.getValue();
+		}
+
+		int position = buf.position();
+		int limit = buf.limit();
+		buf.clear();
+		buf.limit(offset + length);
+		buf.position(offset);
+		crc.updatePage(buf);
+		buf.limit(limit);
+		buf.position(position);
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns <code>true</code> if the stored CRC is the one of the page,
+	 * which must be entirely in the buffer.
+	 */
+	public boolean isChecksumValid() {
+		return computeChecksum() == getChecksum();
+	}
+
+	/**
+	 * Computes the CRC of the page, which must be entirely in the buffer, and
+	 * stores it in the header.
+	 */
+	public void updateChecksum() {
+		setChecksum(computeChecksum());
+	}
+
+	/**
+	 * Decodes the granule position of the header starting at the given index
+	 * of the array.
+	 */
+	public static long getGranulePosition(byte[] b, int offset) {
+		long granule = 0;
+		for (int i = 7; i >= 0; i--)
+			granule = (granule << 8) | (b[offset + 6 + i] & 0xFF);
+		return granule;
+	}
+
+	/**
+	 * Decodes the granule position of the header starting at the given index
+	 * of the buffer.
+	 */
+	public static long getGranulePosition(ByteBuffer buf, int offset) {
+		long granule = 0;
+		for (int i = 7; i >= 0; i--)
+			granule = (granule << 8) | (buf.get(offset + 6 + i) & 0xFF);
+		return granule;
+	}
+
+	private static int getInt(ByteBuffer buf, int i) {
+		return (buf.get(i) & 0xFF) | (buf.get(i + 1) & 0xFF) << 8
+				| (buf.get(i + 2) & 0xFF) << 16 | (buf.get(i + 3) & 0xFF) << 24;
+	}
+
+	private static void putInt(ByteBuffer buf, int i, int value) {
+		buf.put(i, (byte) value);
+		buf.put(i + 1, (byte) (value >>> 8));
+		buf.put(i + 2, (byte) (value >>> 16));
+		buf.put(i + 3, (byte) (value >>> 24));
+	}
+}
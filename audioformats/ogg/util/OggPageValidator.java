@@ -0,0 +1,278 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.ogg.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Checks the integrity of an Ogg file by walking all its pages.<br>
+ * For each page the CRC is verified, then within each logical stream the page
+ * sequence numbers must follow each other and the granule positions must not
+ * decrease. Where no valid page is found, the validator searches the next
+ * one, and reports the bytes skipped as a damaged range.<br>
+ * The file is read sequentially through a single buffer of
+ * {@link #BUFFER_SIZE} bytes, which always holds a whole page, so the memory
+ * used does not depend on the size of the file and nothing is allocated per
+ * page.<br>
+ * An instance can be shared by several threads.
+ */
+public class OggPageValidator {
+
+	/**
+	 * The largest possible Ogg page: a header with 255 segments of 255 bytes.
+	 */
+	public final static int MAX_PAGE_SIZE = 27 + 255 + 255 * 255;
+
+	/**
+	 * Size of the buffer through which the file is read.
+	 */
+	public final static int BUFFER_SIZE = 128 * 1024;
+
+	/**
+	 * Validates the given file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public OggValidationReport validate(File f) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			return validate(raf.getChannel());
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Validates the given file, which is read with positional reads, so the
+	 * position of the channel is not changed.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public OggValidationReport validate(FileChannel fc) throws IOException {
+		return new Walk(fc).run();
+	}
+
+	/**
+	 * The state of one validation.
+	 */
+	private static class Walk {
+		private final static int NO_PAGE = -1;
+
+		private final static int TRUNCATED = -2;
+
+		private final static int BAD_CRC = -3;
+
+		private final FileChannel fc;
+
+		private final long size;
+
+		private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+		private final byte[] b = buf.array();
+
+		// Placed on the page being checked
+		private final OggPageHeaderView view = new OggPageHeaderView();
+
+		// Offset in the file of the first byte of the buffer
+		private long windowStart;
+
+		// Number of bytes of the file in the buffer
+		private int windowLength;
+
+		// The state of each logical stream: serial number, last page sequence
+		// number and last granule position
+		private int[] serials = new int[4];
+
+		private int[] sequences = new int[4];
+
+		private long[] granules = new long[4];
+
+		private int streams;
+
+		private final OggValidationReport report = new OggValidationReport();
+
+		Walk(FileChannel fc) throws IOException {
+			this.fc = fc;
+			this.size = fc.size();
+		}
+
+		OggValidationReport run() throws IOException {
+			report.setLength(size);
+			long pos = 0;
+			while (pos < size) {
+				int length = checkPage(pos);
+				if (length > 0) {
+					report.addPage();
+					checkStream(pos, length);
+					pos += length;
+					continue;
+				}
+
+				long next = resync(pos + 1);
+				report.addDamage(pos, next, length == BAD_CRC ? "Bad CRC"
+						: length == TRUNCATED ? "Truncated page"
+								: "No Ogg page");
+				pos = next;
+			}
+			return report;
+		}
+
+		/**
+		 * Returns the length of the page at the given offset, or the reason why
+		 * there is no valid page there. When a length is returned, the whole
+		 * page is in the buffer.
+		 */
+		private int checkPage(long offset) throws IOException {
+			if (!ensure(offset, OggPageHeaderView.FIXED_SIZE))
+				return size - offset >= 4 && isCapture(offset) ? TRUNCATED
+						: NO_PAGE;
+			if (!view.wrap(buf, (int) (offset - windowStart)))
+				return NO_PAGE;
+			if (!ensure(offset, view.getHeaderLength()))
+				return TRUNCATED;
+
+			view.wrap(buf, (int) (offset - windowStart));
+			int length = view.getTotalLength();
+			if (!ensure(offset, length))
+				return TRUNCATED;
+
+			view.wrap(buf, (int) (offset - windowStart));
+			return view.isChecksumValid() ? length : BAD_CRC;
+		}
+
+		/**
+		 * Checks the sequence number and the granule position of the page,
+		 * where the view is, against the previous page of its stream.
+		 */
+		private void checkStream(long offset, int length) {
+			long granule = view.getGranulePosition();
+			int serial = view.getSerialNumber();
+			int sequence = view.getPageSequence();
+
+			int s = 0;
+			while (s < streams && serials[s] != serial)
+				s++;
+			if (s == streams) {
+				addStream(serial, sequence, granule);
+				return;
+			}
+
+			if (sequence != sequences[s] + 1)
+				report.addDamage(offset, offset + length, "Page sequence "
+						+ (sequences[s] + 1) + " expected, found " + sequence);
+			// -1 marks the pages where no packet ends
+			if (granule != -1) {
+				if (granules[s] != -1 && granule < granules[s])
+					report.addDamage(offset, offset + length,
+							"Granule position decreases from " + granules[s]
+									+ " to " + granule);
+				granules[s] = granule;
+			}
+			sequences[s] = sequence;
+		}
+
+		private void addStream(int serial, int sequence, long granule) {
+			if (streams == serials.length) {
+				int[] newSerials = new int[streams * 2];
+				int[] newSequences = new int[streams * 2];
+				long[] newGranules = new long[streams * 2];
+				System.arraycopy(serials, 0, newSerials, 0, streams);
+				System.arraycopy(sequences, 0, newSequences, 0, streams);
+				System.arraycopy(granules, 0, newGranules, 0, streams);
+				serials = newSerials;
+				sequences = newSequences;
+				granules = newGranules;
+			}
+			serials[streams] = serial;
+			sequences[streams] = sequence;
+			granules[streams] = granule;
+			streams++;
+		}
+
+		/**
+		 * Returns the offset of the next valid page at or after the given
+		 * offset, or the size of the file if there is none.
+		 */
+		private long resync(long from) throws IOException {
+			long pos = from;
+			while (pos + 27 <= size && ensure(pos, 4)) {
+				int i = (int) (pos - windowStart);
+				int end = windowLength - 3;
+				while (i < end
+						&& !(b[i] == 'O' && b[i + 1] == 'g' && b[i + 2] == 'g' && b[i + 3] == 'S'))
+					i++;
+				if (i == end) {
+					pos = windowStart + end;
+					continue;
+				}
+
+				long candidate = windowStart + i;
+				if (checkPage(candidate) > 0)
+					return candidate;
+				pos = candidate + 1;
+			}
+			return size;
+		}
+
+		private boolean isCapture(long offset) throws IOException {
+			if (!ensure(offset, 4))
+				return false;
+			int i = (int) (offset - windowStart);
+			return b[i] == 'O' && b[i + 1] == 'g' && b[i + 2] == 'g'
+					&& b[i + 3] == 'S';
+		}
+
+		/**
+		 * Makes sure the given range of the file is in the buffer, moving the
+		 * window forward if needed. The part of the buffer already read is
+		 * kept, so each byte of the file is read once during the walk.
+		 * 
+		 * @return <code>false</code> if the file ends before the range.
+		 */
+		private boolean ensure(long offset, int length) throws IOException {
+			if (offset >= windowStart
+					&& offset + length <= windowStart + windowLength)
+				return true;
+			if (offset + length > size)
+				return false;
+
+			int kept = 0;
+			if (offset >= windowStart && offset < windowStart + windowLength) {
+				kept = (int) (windowStart + windowLength - offset);
+				System.arraycopy(b, (int) (offset - windowStart), b, 0, kept);
+			}
+			windowStart = offset;
+			buf.clear();
+			buf.position(kept);
+			while (buf.hasRemaining()) {
+				int read = fc.read(buf, windowStart + buf.position());
+				if (read == -1)
+					break;
+			}
+			windowLength = buf.position();
+			return offset + length <= windowStart + windowLength;
+		}
+	}
+}
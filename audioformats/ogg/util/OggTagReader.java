@@ -19,14 +19,16 @@
  */
 package entagged.audioformats.ogg.util;
 
+import entagged.audioformats.generic.FileReadWindow;
 import entagged.audioformats.ogg.*;
 import entagged.audioformats.generic.Utils;
 
 import java.io.*;
+import java.nio.*;
 
 public class OggTagReader {
 
-	public OggTag read( RandomAccessFile raf ) throws IOException {
+	public OggTag read( FileReadWindow raf ) throws IOException {
 		OggTag tag = new OggTag();
 		
 		byte[] b = new byte[4];
@@ -54,5 +56,40 @@ public class OggTagReader {
 		
 		return tag;
 	}
-}
+	
+	/*
+	 * Reads the tag from a comment packet already in memory, the buffer must be
+	 * positioned after the vorbis header.
+	 */
+	public OggTag read( ByteBuffer buf ) throws IOException {
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		OggTag tag = new OggTag();
+		
+		byte[] b = new byte[getLength(buf)];
+		buf.get( b );
+
+		tag.setVendor( new String( b, "UTF-8" ) );
+		
+		int userComments = buf.getInt();
 
+		for ( int i = 0; i < userComments; i++ ) {
+			b = new byte[getLength(buf)];
+			buf.get( b );
+			
+			OggTagField field = new OggTagField(b);
+			tag.add(field);
+		}
+		
+		return tag;
+	}
+	
+	/*
+	 * Reads a length, which can't go past the end of the packet.
+	 */
+	private int getLength( ByteBuffer buf ) {
+		int length = buf.getInt();
+		if ( length < 0 || length > buf.remaining() )
+			throw new BufferUnderflowException();
+		return length;
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Entagged Audio Tag library
+ * Copyright (c) 2003-2005 Raphael Slinckx <raphael@slinckx.net>
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *  
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package entagged.audioformats.ogg.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of the validation of an Ogg file by {@link OggPageValidator}:
+ * the number of valid pages and the damaged ranges of the file.
+ */
+public class OggValidationReport {
+
+	/**
+	 * A damaged range of the file.
+	 */
+	public static class Damage {
+		private final long start;
+
+		private final long end;
+
+		private final String reason;
+
+		Damage(long start, long end, String reason) {
+			this.start = start;
+			this.end = end;
+			this.reason = reason;
+		}
+
+		/**
+		 * Returns the offset of the first byte of the range.
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * Returns the offset following the last byte of the range.
+		 */
+		public long getEnd() {
+			return end;
+		}
+
+		/**
+		 * Returns the description of the problem.
+		 */
+		public String getReason() {
+			return reason;
+		}
+
+		public String toString() {
+			return "[" + start + ", " + end + "[ " + reason;
+		}
+	}
+
+	private final List damages = new ArrayList();
+
+	private int pageCount;
+
+	private long length;
+
+	/**
+	 * Adds a damaged range, merged with the previous one if they are
+	 * contiguous and have the same reason.
+	 */
+	void addDamage(long start, long end, String reason) {
+		if (!damages.isEmpty()) {
+			Damage last = (Damage) damages.get(damages.size() - 1);
+			if (last.end == start && last.reason.equals(reason)) {
+				damages.set(damages.size() - 1, new Damage(last.start, end,
+						reason));
+				return;
+			}
+		}
+		damages.add(new Damage(start, end, reason));
+	}
+
+	void addPage() {
+		pageCount++;
+	}
+
+	void setLength(long length) {
+		this.length = length;
+	}
+
+	/**
+	 * Returns the damaged ranges, in the order of the file.
+	 * 
+	 * @return A list of {@link Damage}, empty if the file is valid.
+	 */
+	public List getDamages() {
+		return Collections.unmodifiableList(damages);
+	}
+
+	/**
+	 * Returns the length of the file checked.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the number of pages with a valid CRC.
+	 */
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * Returns <code>true</code> if no damage was found.
+	 */
+	public boolean isValid() {
+		return damages.isEmpty();
+	}
+
+	public String toString() {
+		String out = "Ogg validation: " + pageCount + " pages, " + length
+				+ " bytes, " + (isValid() ? "valid" : "damaged") + "\n";
+		for (int i = 0; i < damages.size(); i++)
+			out += damages.get(i) + "\n";
+		return out;
+	}
+}
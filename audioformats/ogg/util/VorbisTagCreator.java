@@ -19,6 +19,7 @@
 package entagged.audioformats.ogg.util;
 
 import entagged.audioformats.*;
+import entagged.audioformats.generic.SerializedTag;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.*;
@@ -28,16 +29,16 @@ public class VorbisTagCreator {
 	
 	//Creates the ByteBuffer for the ogg tag
 	public ByteBuffer convert(Tag tag) throws UnsupportedEncodingException {
-		ByteBuffer ogg = creator.convert(tag);
-		int tagLength = ogg.capacity() + 8;
+		SerializedTag ogg = creator.serialize(tag);
+		int tagLength = ogg.getSize() + 8;
 		
 		ByteBuffer buf = ByteBuffer.allocate( tagLength );
 		
 		//[packet type=comment0x03]['vorbis']
 		buf.put( new byte[]{(byte) 0x03, (byte) 0x76, (byte) 0x6f, (byte) 0x72, (byte) 0x62, (byte) 0x69, (byte) 0x73} );
 		
-		//The actual tag
-		buf.put(ogg);
+		//The actual tag, serialized straight in the packet
+		ogg.writeTo(buf, 0);
 
 		//Framing bit = 1
 		buf.put( (byte) 0x01 );
@@ -20,16 +20,18 @@
 package entagged.audioformats.ogg.util;
 
 import entagged.audioformats.*;
+import entagged.audioformats.generic.FileReadWindow;
 import entagged.audioformats.ogg.*;
 import entagged.audioformats.exceptions.*;
 
 import java.io.*;
+import java.nio.*;
 
 public class VorbisTagReader {
 	
 	private OggTagReader oggTagReader = new OggTagReader();
 	
-	public Tag read( RandomAccessFile raf ) throws CannotReadException, IOException {
+	public Tag read( FileReadWindow raf ) throws CannotReadException, IOException {
 		long oldPos = 0;
 		//----------------------------------------------------------
 		
@@ -64,31 +66,61 @@ public class VorbisTagReader {
 
 		raf.seek( raf.getFilePointer() + pageHeader.getPageLength() );
 
-		//2nd page extraction
-		oldPos = raf.getFilePointer();
-		raf.seek(raf.getFilePointer() + 26);
-		pageSegments = raf.readByte()&0xFF; //unsigned
-		raf.seek(oldPos);
+		return readCommentPage(raf);
+	}
+	
+	/*
+	 * Reads the tag from the second page, the window must point at its beginning.
+	 * The comment packet can go on over the following pages, it is put together
+	 * before being parsed.
+	 */
+	public Tag readCommentPage( FileReadWindow raf ) throws CannotReadException, IOException {
+		ByteArrayOutputStream packet = new ByteArrayOutputStream();
+		byte[] header = new byte[OggPageHeaderView.FIXED_SIZE];
+		byte[] b = new byte[255];
+		boolean complete = false;
+		while (!complete) {
+			raf.readFully(header);
+			if (header[0] != 'O' || header[1] != 'g' || header[2] != 'g' || header[3] != 'S')
+				throw new CannotReadException("Cannot find comment block (no ogg page)");
+			
+			int pageSegments = header[26]&0xFF; //unsigned
+			byte[] segments = new byte[pageSegments];
+			raf.readFully(segments);
+			
+			//Read the segments of the comment packet, the rest of the page is
+			//not needed
+			for (int i = 0; i < pageSegments && !complete; i++) {
+				int lacing = segments[i]&0xFF;
+				raf.readFully(b, 0, lacing);
+				packet.write(b, 0, lacing);
+				complete = lacing < 255;
+			}
+		}
 		
-		b = new byte[27 + pageSegments];
-		raf.read( b );
-		pageHeader = new OggPageHeader( b );
+		ByteBuffer buf = ByteBuffer.wrap(packet.toByteArray());
+		if (buf.remaining() < 8)
+			throw new CannotReadException("Cannot find comment block (no vorbis header)");
 
 		b = new byte[7];
-		raf.read( b );
+		buf.get( b );
 		
 		String vorbis = new String(b, 1, 6);
 		if(b[0] != 3 || !vorbis.equals("vorbis"))
 			throw new CannotReadException("Cannot find comment block (no vorbis header)");
 
 		//Begin tag reading
-		OggTag tag = oggTagReader.read(raf);
+		OggTag tag;
+		try {
+			tag = oggTagReader.read(buf);
+		} catch (BufferUnderflowException e) {
+			throw new CannotReadException("Error: The OGG Stream isn't valid, could not extract the tag");
+		}
 		
-		byte isValid = raf.readByte();
+		byte isValid = buf.hasRemaining() ? buf.get() : 0;
 		if ( isValid == 0 )
 			throw new CannotReadException("Error: The OGG Stream isn't valid, could not extract the tag");
 		
 		return tag;
 	}
 }
-
@@ -21,21 +21,28 @@ package entagged.audioformats.ogg.util;
 
 import entagged.audioformats.*;
 import entagged.audioformats.exceptions.*;
-import entagged.audioformats.generic.Utils;
+import entagged.audioformats.generic.FileReadWindow;
 import entagged.audioformats.ogg.OggTag;
 
 import java.io.*;
 import java.nio.*;
+import java.nio.channels.FileChannel;
 
 public class VorbisTagWriter {
 	
+	/*
+	 * Size of the buffer through which the pages following the headers are
+	 * copied, it holds at least one page of the largest size.
+	 */
+	private final static int BUFFER_SIZE = 256 * 1024;
+	
 	private VorbisTagCreator tc = new VorbisTagCreator();
 	private VorbisTagReader reader = new VorbisTagReader();
 	
 	public void delete(RandomAccessFile raf,  RandomAccessFile tempRaf) throws IOException, CannotWriteException {
 		OggTag tag = null;
 		try {
-			tag = (OggTag) reader.read(raf);
+			tag = (OggTag) reader.read(new FileReadWindow(raf));
 		} catch(CannotReadException e) {
 			write(new OggTag(), raf, tempRaf);
 			return;
@@ -47,231 +54,240 @@ public class VorbisTagWriter {
 		write(emptyTag, raf, tempRaf);
 	}
 	
+	/*
+	 * Rewrites the file with the new comment header. The identification header
+	 * page is copied, then the comment and setup headers are laid out again on
+	 * as many pages as needed, each holding up to 255 segments. If the number
+	 * of header pages changes, the sequence numbers of the following pages of
+	 * the stream are shifted and their CRC updated, in a single pass through a
+	 * fixed size buffer. Otherwise the rest of the file is copied as is.
+	 */
 	public void write(Tag tag, RandomAccessFile raf, RandomAccessFile rafTemp) throws CannotWriteException, IOException {
-		//Read firstPage----------------------------------------------------
-		raf.seek(26);
-		byte[] b = new byte[4];
-		int pageSegments = raf.readByte()&0xFF; //Unsigned
-		raf.seek(0);
-
-		b = new byte[27 + pageSegments];
-		raf.read(b);
-
-		OggPageHeader firstPage = new OggPageHeader(b);
-		//System.err.println(firstPage.isValid());
-		//------------------------------------------------------------------
-
-		raf.seek(0);
+		FileChannel fc = raf.getChannel();
+		FileChannel tempFC = rafTemp.getChannel();
+		ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+		byte[] b = buf.array();
+		OggPageHeaderView view = new OggPageHeaderView();
+		
 		//write 1st page (unchanged)----------------------------------------
-		rafTemp.getChannel().transferFrom(
-			raf.getChannel(),
-			0,
-			firstPage.getPageLength() + 27 + pageSegments);
-		rafTemp.skipBytes((int) (firstPage.getPageLength() + raf.getFilePointer()));
+		readPage(fc, 0, buf, view);
+		long pos = view.getTotalLength();
+		int serial = view.getSerialNumber();
+		int sequence = view.getPageSequence() + 1;
+		buf.flip();
+		tempFC.position(0);
+		write(tempFC, buf);
 		//------------------------------------------------------------------
 		
-		//Read 2nd page-----------------------------------------------------
-		long pos = raf.getFilePointer();
-		raf.seek(raf.getFilePointer() + 26);
-		pageSegments = raf.readByte()&0xFF; //Unsigned
-		raf.seek(pos);
-		
-		b = new byte[27 + pageSegments];
-		raf.read(b);
-		OggPageHeader secondPage = new OggPageHeader(b);
-		//System.err.println(secondPage.isValid());
-		long secondPageEndPos = raf.getFilePointer();
-		//------------------------------------------------------------------
-
-		//Compute old comment length----------------------------------------
-		int oldCommentLength = 7; // [.vorbis]
-		raf.seek(raf.getFilePointer() + 7);
-
-		b = new byte[4];
-		raf.read(b);
-		int vendorStringLength = Utils.getNumber(b, 0,3);
-		oldCommentLength += 4 + vendorStringLength;
-
-		raf.seek(raf.getFilePointer() + vendorStringLength);
-
-		b = new byte[4];
-		raf.read(b);
-		int userComments = Utils.getNumber(b, 0,3);
-		oldCommentLength += 4;
-
-		for (int i = 0; i < userComments; i++) {
-			b = new byte[4];
-			raf.read(b);
-			int commentLength = Utils.getNumber(b, 0,3);
-			oldCommentLength += 4 + commentLength;
-
-			raf.seek(raf.getFilePointer() + commentLength);
+		//Read the old comment and setup headers----------------------------
+		//The setup header ends the last header page, the audio data begins
+		//on a new page
+		byte[] commentStart = new byte[7];
+		int commentLength = 0;
+		byte commentEnd = 0;
+		ByteArrayOutputStream setup = new ByteArrayOutputStream();
+		int packet = 0;
+		int oldHeaderPages = 0;
+		while (packet < 2) {
+			readPage(fc, pos, buf, view);
+			if (view.getSerialNumber() != serial)
+				throw new CannotWriteException("Unable to retreive old tag informations");
+			
+			int data = view.getHeaderLength();
+			for (int i = 0; i < view.getSegmentCount(); i++) {
+				int lacing = view.getSegment(i);
+				if (packet == 0) {
+					for (int j = 0; j < lacing && commentLength + j < 7; j++)
+						commentStart[commentLength + j] = b[data + j];
+					if (lacing > 0)
+						commentEnd = b[data + lacing - 1];
+					commentLength += lacing;
+				} else if (packet == 1) {
+					setup.write(b, data, lacing);
+				} else {
+					throw new CannotWriteException("The audio data doesn't begin on a new page");
+				}
+				data += lacing;
+				if (lacing < 255)
+					packet++;
+			}
+			pos += view.getTotalLength();
+			oldHeaderPages++;
 		}
-
-		byte isValid = raf.readByte();
-		oldCommentLength += 1;
-		if (isValid != 1)
+		
+		if (commentLength < 8 || commentStart[0] != 3 || !new String(commentStart, 1, 6).equals("vorbis") || commentEnd != 1)
 			throw new CannotWriteException("Unable to retreive old tag informations");
-		//System.err.println("oldCommentLength: "+oldCommentLength);
 		//------------------------------------------------------------------
-
-		//Get the new comment and create the container bytebuffer for 2nd page---
+		
+		//Write the new comment and the setup headers-----------------------
 		ByteBuffer newComment = tc.convert(tag);
-
-		int newCommentLength = newComment.capacity();
-		int newSecondPageLength =
-			secondPage.getPageLength()
-				- oldCommentLength
-				+ newCommentLength;
-
-//		byte pageSegmentsNb = (byte) (newSecondPageLength / 255 + 1);
-		byte[] segmentTable = createSegmentTable(oldCommentLength,newCommentLength,secondPage);
-		int newSecondPageHeaderLength = 27 + segmentTable.length;
-
-		ByteBuffer secondPageBuffer =
-			ByteBuffer.allocate(
-				newSecondPageLength + newSecondPageHeaderLength);
-		//System.err.println("Page size: "+secondPage.getPageLength());
-		//System.err.println("Old comment: "+oldCommentLength);
-		//System.err.println("New comment: "+newCommentLength);
-		//System.err.println("New page length: "+(secondPage.getPageLength()-oldCommentLength+newCommentLength));
+		byte[][] packets = new byte[][] {newComment.array(), setup.toByteArray()};
+		int newHeaderPages = writeHeaderPages(tempFC, packets, serial, sequence, buf, view);
 		//------------------------------------------------------------------
-
-		//Build the new second page header----------------------------------
-		//OggS capture
-		b = new String("OggS").getBytes();
-		secondPageBuffer.put(b);
-		//Stream struct revision
-		secondPageBuffer.put((byte) 0);
-		//header_type_flag
-		secondPageBuffer.put((byte) 0);
-		//absolute granule position
-		secondPageBuffer.put(
-			new byte[] {
-				(byte) 0,
-				(byte) 0,
-				(byte) 0,
-				(byte) 0,
-				(byte) 0,
-				(byte) 0,
-				(byte) 0,
-				(byte) 0 });
-
-		//stream serial number
-		int serialNb = secondPage.getSerialNumber();
-		//System.err.println(serialNb);
-		b = new byte[4];
-		b[3] = (byte) ((serialNb & 0xFF000000) >> 24);
-		b[2] = (byte) ((serialNb & 0x00FF0000) >> 16);
-		b[1] = (byte) ((serialNb & 0x0000FF00) >> 8);
-		b[0] = (byte) (serialNb & 0x000000FF);
-		secondPageBuffer.put(b);
-
-		//page sequence no
-		int seqNb = secondPage.getPageSequence();
-		//System.err.println(seqNb);
-		b = new byte[4];
-		b[3] = (byte) ((seqNb & 0xFF000000) >> 24);
-		b[2] = (byte) ((seqNb & 0x00FF0000) >> 16);
-		b[1] = (byte) ((seqNb & 0x0000FF00) >> 8);
-		b[0] = (byte) (seqNb & 0x000000FF);
-		secondPageBuffer.put(b);
-
-		//CRC (to be computed later)
-		secondPageBuffer.put(
-			new byte[] {(byte) 0, (byte) 0, (byte) 0, (byte) 0 });
-		int crcOffset = 22;
 		
-		if (segmentTable.length > 255) {
-		    throw new CannotWriteException ("In this special case we need to " +
-		    		"create a new page, since we still hadn't the time for that " +
-		    		"we won't write because it wouldn't create an ogg file.");
-		}
-		//page_segments nb.
-		secondPageBuffer.put((byte)segmentTable.length);
-
-		//page segment table
-		for (int i = 0; i < segmentTable.length; i++)
-			secondPageBuffer.put(segmentTable[i]);
-		//------------------------------------------------------------------
-
-		//Add to the new second page the new comment------------------------
-		secondPageBuffer.put(newComment);
-		//------------------------------------------------------------------
-
-		//Add the remaining old second page (encoding infos, etc)-----------
-		raf.seek(secondPageEndPos);
-		raf.skipBytes(oldCommentLength);
-		raf.getChannel().read(secondPageBuffer);
-		//------------------------------------------------------------------
-
-		//Compute CRC over the new second page------------------------------
-		byte[] crc = OggCRCFactory.computeCRC(secondPageBuffer.array());
-		for (int i = 0; i < crc.length; i++) {
-			//System.err.println("Offset: "+(crcOffset+i) +"|"+crc[i]);
-			secondPageBuffer.put(crcOffset + i, crc[i]);
-			//System.err.println(secondPageBuffer.get(crcOffset+i));
-		}
-		//------------------------------------------------------------------
-
-		//Transfer the second page bytebuffer content-----------------------
-		secondPageBuffer.rewind();
-		rafTemp.getChannel().write(secondPageBuffer);
-		//rafTemp.skipBytes( newSecondPageLength+newSecondPageHeaderLength );
-		//------------------------------------------------------------------
-
 		//Write the rest of the original file-------------------------------
-		rafTemp.getChannel().transferFrom(
-			raf.getChannel(),
-			rafTemp.getFilePointer(),
-			raf.length() - raf.getFilePointer());
+		int shift = newHeaderPages - oldHeaderPages;
+		if (shift == 0)
+			copy(fc, pos, fc.size() - pos, tempFC);
+		else
+			renumber(fc, pos, tempFC, serial, shift, buf, view);
 		//------------------------------------------------------------------
-		//System.err.println(tempOGG);
-		//System.err.println(f.getAbsolutePath());
 	}
-
-    /**
-     * This method creates a new segment table for the second page (header).
-     * @param oldCommentLength The lentgh of the old comment section, used to verify
-     * the old secment table
-     * @param newCommentLength Of this value the start of the segment table
-     * will be created.
-     * @param secondPage The second page from the source file.
-     * @return new segment table.
-     */
-    private byte[] createSegmentTable(int oldCommentLength,
-            int newCommentLength, OggPageHeader secondPage)  {
-        int totalLenght = secondPage.getPageLength();
-        byte[] restShouldBe = createSegments(totalLenght-oldCommentLength,false);
-        byte[] newStart = createSegments(newCommentLength,true);
-        byte[] result = new byte[newStart.length+restShouldBe.length];
-        System.arraycopy(newStart, 0, result, 0, newStart.length);
-        System.arraycopy(restShouldBe, 0, result, newStart.length, restShouldBe.length);
-        return result;
-    }
-    
-    /**
-     * This method easily creates a byte Array of values whose sum should
-     * be the value of <code>length</code>.<br>
-     * 
-     * @param length Size of the page which should be
-     * represented as 255 byte packets.
-     * @param quitStream If true and a length is a multiple of 255 we need another
-     * segment table entry with the value of 0. Else it's the last stream of the 
-     * table which is already ended.
-     * @return Array of packet sizes. However only the last packet will
-     * differ from 255.
-     */
-    private byte[] createSegments(int length,boolean quitStream) {
-        byte[] result = new byte[length / 255 + 
-                                 ((length % 255 == 0 && !quitStream) ? 0 : 1)];
-        int i = 0;
-        for (; i < result.length -1 ; i++) {
-            result[i] = (byte)0xFF;
-        }
-        result[result.length-1] = (byte) (length - (i * 255));
-        return result;
-    }
-
-
-}
\ No newline at end of file
+	
+	/*
+	 * Lays out the packets on pages of up to 255 segments and writes them.
+	 * A page where no packet ends has a granule position of -1, the others 0
+	 * as they only hold headers.
+	 * 
+	 * @return The number of pages written.
+	 */
+	private int writeHeaderPages(FileChannel out, byte[][] packets, int serial, int sequence, ByteBuffer buf, OggPageHeaderView view) throws IOException {
+		byte[] b = buf.array();
+		int pages = 0;
+		// The packet and the offset in it where the next page begins
+		int p = 0;
+		int offset = 0;
+		while (p < packets.length) {
+			boolean continued = offset > 0;
+			
+			//Segment table
+			int segments = 0;
+			int dataLength = 0;
+			boolean packetEnds = false;
+			int q = p;
+			int qOffset = offset;
+			while (segments < 255 && q < packets.length) {
+				int left = packets[q].length - qOffset;
+				int lacing = Math.min(left, 255);
+				b[27 + segments++] = (byte) lacing;
+				dataLength += lacing;
+				qOffset += lacing;
+				if (lacing < 255) {
+					packetEnds = true;
+					q++;
+					qOffset = 0;
+				}
+			}
+			
+			//Header
+			buf.clear();
+			buf.put(new byte[] {(byte) 'O', (byte) 'g', (byte) 'g', (byte) 'S', 0});
+			buf.put((byte) (continued ? OggPageHeaderView.CONTINUED : 0));
+			view.wrap(buf, 0);
+			view.setGranulePosition(packetEnds ? 0 : -1);
+			buf.position(14);
+			buf.put((byte) serial).put((byte) (serial >>> 8)).put((byte) (serial >>> 16)).put((byte) (serial >>> 24));
+			view.setPageSequence(sequence + pages);
+			view.setChecksum(0);
+			buf.put(26, (byte) segments);
+			
+			//Data
+			buf.position(27 + segments);
+			int left = dataLength;
+			while (left > 0) {
+				int n = Math.min(left, packets[p].length - offset);
+				buf.put(packets[p], offset, n);
+				left -= n;
+				offset += n;
+				if (offset == packets[p].length && left > 0) {
+					p++;
+					offset = 0;
+				}
+			}
+			p = q;
+			offset = qOffset;
+			
+			view.updateChecksum();
+			buf.flip();
+			write(out, buf);
+			pages++;
+		}
+		return pages;
+	}
+	
+	/*
+	 * Copies the pages from the given offset to the end of the file, shifting
+	 * the sequence numbers of the pages of the given stream. The file is read
+	 * by blocks of the size of the buffer, each block is fixed in memory and
+	 * written at once. Anything which is not a complete page (trailing data or
+	 * a truncated page) is copied unchanged with the rest of the file.
+	 */
+	private void renumber(FileChannel fc, long from, FileChannel out, int serial, int shift, ByteBuffer buf, OggPageHeaderView view) throws IOException {
+		byte[] b = buf.array();
+		long size = fc.size();
+		long readPos = from;
+		int n = 0;
+		while (true) {
+			buf.clear();
+			buf.position(n);
+			buf.limit((int) Math.min(buf.capacity(), n + size - readPos));
+			read(fc, buf, readPos - n);
+			readPos += buf.position() - n;
+			n = buf.position();
+			
+			int i = 0;
+			while (i + OggPageHeaderView.FIXED_SIZE <= n && view.wrap(buf, i)
+					&& i + view.getHeaderLength() <= n && i + view.getTotalLength() <= n) {
+				if (view.getSerialNumber() == serial) {
+					view.setPageSequence(view.getPageSequence() + shift);
+					view.updateChecksum();
+				}
+				i += view.getTotalLength();
+			}
+			
+			if (i == 0) {
+				buf.position(0);
+				buf.limit(n);
+				write(out, buf);
+				copy(fc, readPos, size - readPos, out);
+				return;
+			}
+			
+			buf.position(0);
+			buf.limit(i);
+			write(out, buf);
+			System.arraycopy(b, i, b, 0, n - i);
+			n -= i;
+		}
+	}
+	
+	/*
+	 * Reads the page at the given offset in the buffer, and places the view on
+	 * it. The buffer is left positioned after the page.
+	 */
+	private void readPage(FileChannel fc, long offset, ByteBuffer buf, OggPageHeaderView view) throws IOException, CannotWriteException {
+		buf.clear();
+		buf.limit(OggPageHeaderView.FIXED_SIZE);
+		read(fc, buf, offset);
+		if (buf.hasRemaining() || !view.wrap(buf, 0))
+			throw new CannotWriteException("No Ogg page at offset " + offset);
+		
+		buf.limit(view.getHeaderLength());
+		read(fc, buf, offset);
+		buf.limit(view.getTotalLength());
+		read(fc, buf, offset);
+		if (buf.hasRemaining())
+			throw new CannotWriteException("Truncated Ogg page at offset " + offset);
+	}
+	
+	/*
+	 * Reads the file from the given offset, plus the position of the buffer,
+	 * until the buffer is full or the end of the file is reached.
+	 */
+	private void read(FileChannel fc, ByteBuffer buf, long offset) throws IOException {
+		while (buf.hasRemaining())
+			if (fc.read(buf, offset + buf.position()) == -1)
+				break;
+	}
+	
+	private void write(FileChannel out, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining())
+			out.write(buf);
+	}
+	
+	private void copy(FileChannel fc, long from, long count, FileChannel out) throws IOException {
+		long done = 0;
+		while (done < count)
+			done += fc.transferTo(from + done, count - done, out);
+	}
+}
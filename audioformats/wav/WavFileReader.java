@@ -21,6 +21,7 @@ package entagged.audioformats.wav;
 import entagged.audioformats.*;
 import entagged.audioformats.exceptions.*;
 import entagged.audioformats.generic.AudioFileReader;
+import entagged.audioformats.generic.FileReadWindow;
 import entagged.audioformats.generic.GenericTag;
 import entagged.audioformats.wav.util.WavInfoReader;
 
@@ -30,11 +31,11 @@ public class WavFileReader extends AudioFileReader {
 	
 	private WavInfoReader ir = new WavInfoReader();
 	
-	protected EncodingInfo getEncodingInfo( RandomAccessFile raf )  throws CannotReadException, IOException {
+	protected EncodingInfo getEncodingInfo( FileReadWindow raf )  throws CannotReadException, IOException {
 		return ir.read(raf);
 	}
 	
-	protected Tag getTag( RandomAccessFile raf )  throws CannotReadException {
+	protected Tag getTag( FileReadWindow raf )  throws CannotReadException {
 		return new GenericTag();
 	}
 }
@@ -20,11 +20,12 @@ package entagged.audioformats.wav.util;
 
 import entagged.audioformats.EncodingInfo;
 import entagged.audioformats.exceptions.*;
+import entagged.audioformats.generic.FileReadWindow;
 
 import java.io.*;
 
 public class WavInfoReader {
-	public EncodingInfo read(RandomAccessFile raf) throws CannotReadException,
+	public EncodingInfo read(FileReadWindow raf) throws CannotReadException,
 			IOException {
 		// Reads wav header----------------------------------------
 		EncodingInfo info = new EncodingInfo();